@@ -0,0 +1,87 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * saveNewBeers' single INSERT with a binding set per beer against one INSERT per beer, as saving them one at
+ * a time does, on in-memory H2.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BeerBatchInsertBenchmark {
+
+    @Param({"10", "500"})
+    int beers;
+
+    ConnectionFactory connectionFactory;
+    DatabaseClient databaseClient;
+    BeerBatchInsert beerBatchInsert;
+    // upc is unique, every inserted beer gets a new one
+    long upcs;
+
+    @Setup
+    public void setUp() {
+        connectionFactory = H2ConnectionFactory.inMemory("batch-insert-benchmark");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).populate(connectionFactory).block();
+        databaseClient = DatabaseClient.create(connectionFactory);
+        beerBatchInsert = new BeerBatchInsertImpl(databaseClient);
+    }
+
+    // each insert takes milliseconds, so emptying the table after every one doesn't skew the timing and keeps
+    // the inserts from slowing down as the table and its indexes grow
+    @TearDown(Level.Invocation)
+    public void emptyTable() {
+        databaseClient.sql("DELETE FROM beer").then().block();
+    }
+
+    @Benchmark
+    public List<Integer> batchInsert() {
+        return beerBatchInsert.insertAll(newBeers()).collectList().block();
+    }
+
+    @Benchmark
+    public List<Integer> singleInserts() {
+        return Flux.fromIterable(newBeers())
+                .concatMap(beer -> beerBatchInsert.insertAll(List.of(beer)))
+                .collectList().block();
+    }
+
+    private List<Beer> newBeers() {
+        LocalDateTime now = LocalDateTime.now();
+        return IntStream.range(0, beers).mapToObj(i -> Beer.builder()
+                .beerName("Benchmark Lager " + i)
+                .beerStyle(BeerStyleEnum.LAGER)
+                .upc("bench" + upcs++)
+                .price(new BigDecimal("4.99"))
+                .quantityOnHand(10)
+                .createdDate(now)
+                .lastModifiedDate(now)
+                .build())
+                .collect(Collectors.toList());
+    }
+}
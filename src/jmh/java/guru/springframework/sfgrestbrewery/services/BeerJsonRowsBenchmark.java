@@ -0,0 +1,147 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.mappers.BeerMapper;
+import guru.springframework.sfgrestbrewery.web.mappers.BeerMapperImpl;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.data.r2dbc.core.DefaultReactiveDataAccessStrategy;
+import org.springframework.data.r2dbc.dialect.H2Dialect;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * One beer row to a JSON buffer, through Beer and BeerDto as streamBeers does it and straight from the row as
+ * BeerJsonRows does it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BeerJsonRowsBenchmark {
+
+    NettyDataBufferFactory bufferFactory;
+    ObjectMapper objectMapper;
+    BiFunction<Row, RowMetadata, Beer> rowMapper;
+    BeerMapper beerMapper;
+    BeerJsonRows beerJsonRows;
+    MapRow row;
+
+    @Setup
+    public void setUp() {
+        bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        rowMapper = new DefaultReactiveDataAccessStrategy(H2Dialect.INSTANCE).getRowMapper(Beer.class);
+        beerMapper = new BeerMapperImpl();
+        beerJsonRows = new BeerJsonRows(null, objectMapper, null, null, null);
+
+        Map<String, Object> columns = new LinkedHashMap<>();
+        columns.put("id", 42);
+        columns.put("version", 3L);
+        columns.put("beer_name", "Mango Bobs");
+        columns.put("beer_style", "ALE");
+        columns.put("upc", "0631234200036");
+        columns.put("quantity_on_hand", 1234);
+        columns.put("price", new BigDecimal("12.95"));
+        columns.put("created_date", LocalDateTime.now());
+        columns.put("last_modified_date", LocalDateTime.now());
+        row = new MapRow(columns);
+    }
+
+    @Benchmark
+    public int viaBeerDto() throws Exception {
+        DataBuffer buffer = bufferFactory.allocateBuffer(256);
+        objectMapper.writeValue(buffer.asOutputStream(), beerMapper.beerToBeerDto(rowMapper.apply(row, row)));
+        return release(buffer);
+    }
+
+    @Benchmark
+    public int fromRow() {
+        DataBuffer buffer = bufferFactory.allocateBuffer(256);
+        beerJsonRows.write(row, false, buffer.asOutputStream());
+        return release(buffer);
+    }
+
+    private static int release(DataBuffer buffer) {
+        int size = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return size;
+    }
+
+    /**
+     * A row as the H2 driver hands it over, already converted to the column java types.
+     */
+    static class MapRow implements Row, RowMetadata {
+
+        private final Map<String, Object> columns;
+
+        MapRow(Map<String, Object> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public <T> T get(int index, Class<T> type) {
+            return type.cast(columns.values().toArray()[index]);
+        }
+
+        @Override
+        public <T> T get(String name, Class<T> type) {
+            return type.cast(columns.get(name.toLowerCase()));
+        }
+
+        @Override
+        public ColumnMetadata getColumnMetadata(int index) {
+            return metadata((String) columns.keySet().toArray()[index]);
+        }
+
+        @Override
+        public ColumnMetadata getColumnMetadata(String name) {
+            return metadata(name.toLowerCase());
+        }
+
+        @Override
+        public Iterable<? extends ColumnMetadata> getColumnMetadatas() {
+            return columns.keySet().stream().map(this::metadata).collect(Collectors.toList());
+        }
+
+        @Override
+        public Collection<String> getColumnNames() {
+            return columns.keySet();
+        }
+
+        private ColumnMetadata metadata(String name) {
+            Object value = columns.get(name);
+            return new ColumnMetadata() {
+                @Override
+                public String getName() {
+                    return name;
+                }
+
+                @Override
+                public Class<?> getJavaType() {
+                    return value == null ? Object.class : value.getClass();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.DefaultReactiveDataAccessStrategy;
+import org.springframework.data.r2dbc.core.StatementMapper;
+import org.springframework.data.r2dbc.dialect.H2Dialect;
+import org.springframework.data.r2dbc.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.core.PreparedOperation;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the listBeers queries, and rendering one to SQL the way R2dbcEntityTemplate does on every call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ListQueryBenchmark {
+
+    PageRequest pageRequest;
+    String cursor;
+    DefaultReactiveDataAccessStrategy dataAccessStrategy;
+    StatementMapper statementMapper;
+
+    @Setup
+    public void setUp() {
+        pageRequest = PageRequest.of(3, 25, Sort.by("beerName"));
+        cursor = BeerCursor.after("beerName", 3, BeerDto.builder()
+                .id(101)
+                .beerName("Galaxy Cat")
+                .price(new BigDecimal("9.99"))
+                .build()).encode();
+        dataAccessStrategy = new DefaultReactiveDataAccessStrategy(H2Dialect.INSTANCE);
+        statementMapper = dataAccessStrategy.getStatementMapper().forType(Beer.class);
+    }
+
+    @Benchmark
+    public Query offsetPageQuery() {
+        return offsetQuery();
+    }
+
+    @Benchmark
+    public Query cursorPageQuery() {
+        BeerCursor beerCursor = BeerCursor.decode(cursor);
+        Criteria criteria = BeerServiceImpl.filterCriteria(null, BeerStyleEnum.ALE);
+        return Query.query(criteria.and(beerCursor.seekCriteria()))
+                .sort(BeerCursor.sortFor(beerCursor.getSortKey()))
+                .limit(25);
+    }
+
+    @Benchmark
+    public String offsetPageSql() {
+        Query query = offsetQuery();
+        StatementMapper.SelectSpec select = statementMapper.createSelect(SqlIdentifier.unquoted("beer"))
+                .withProjection(dataAccessStrategy.getAllColumns(Beer.class).toArray(new SqlIdentifier[0]))
+                .withCriteria(query.getCriteria().orElseThrow())
+                .withSort(query.getSort())
+                .offset(query.getOffset())
+                .limit(query.getLimit());
+        PreparedOperation<?> operation = statementMapper.getMappedObject(select);
+        return operation.toQuery();
+    }
+
+    private Query offsetQuery() {
+        Criteria criteria = BeerServiceImpl.filterCriteria("Galaxy Cat", BeerStyleEnum.ALE);
+        String sortKey = BeerCursor.sortKeyOf(pageRequest.getSort());
+        return Query.query(criteria)
+                .sort(BeerCursor.sortFor(sortKey))
+                .offset(pageRequest.getOffset())
+                .limit(pageRequest.getPageSize());
+    }
+}
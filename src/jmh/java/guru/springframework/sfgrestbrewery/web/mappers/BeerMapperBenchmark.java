@@ -0,0 +1,61 @@
+package guru.springframework.sfgrestbrewery.web.mappers;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MapStruct mapping every beer read and write goes through.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BeerMapperBenchmark {
+
+    BeerMapper beerMapper;
+    Beer beer;
+    BeerDto beerDto;
+
+    @Setup
+    public void setUp() {
+        beerMapper = new BeerMapperImpl();
+        beer = Beer.builder()
+                .id(42)
+                .version(3L)
+                .beerName("Mango Bobs")
+                .beerStyle(BeerStyleEnum.ALE)
+                .upc("0631234200036")
+                .quantityOnHand(1234)
+                .price(new BigDecimal("12.95"))
+                .createdDate(LocalDateTime.now())
+                .lastModifiedDate(LocalDateTime.now())
+                .build();
+        beerDto = beerMapper.beerToBeerDtoWithInventory(beer);
+    }
+
+    @Benchmark
+    public BeerDto beerToBeerDto() {
+        return beerMapper.beerToBeerDto(beer);
+    }
+
+    @Benchmark
+    public BeerDto beerToBeerDtoWithInventory() {
+        return beerMapper.beerToBeerDtoWithInventory(beer);
+    }
+
+    @Benchmark
+    public Beer beerDtoToBeer() {
+        return beerMapper.beerDtoToBeer(beerDto);
+    }
+}
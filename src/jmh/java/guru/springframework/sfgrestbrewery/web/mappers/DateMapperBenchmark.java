@@ -0,0 +1,52 @@
+package guru.springframework.sfgrestbrewery.web.mappers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateMapperBenchmark {
+
+    DateMapper dateMapper;
+    Timestamp timestamp;
+    OffsetDateTime offsetDateTime;
+
+    @Setup
+    public void setUp() {
+        dateMapper = new DateMapper();
+        timestamp = Timestamp.valueOf("2021-03-07 10:15:30.123456789");
+        offsetDateTime = OffsetDateTime.of(2021, 3, 7, 10, 15, 30, 123456789, ZoneOffset.ofHours(2));
+    }
+
+    @Benchmark
+    public OffsetDateTime asOffsetDateTime() {
+        return dateMapper.asOffsetDateTime(timestamp);
+    }
+
+    /**
+     * What asOffsetDateTime did before, a Timestamp to LocalDateTime conversion for each of the seven fields.
+     */
+    @Benchmark
+    public OffsetDateTime asOffsetDateTimePerField() {
+        Timestamp ts = timestamp;
+        return OffsetDateTime.of(ts.toLocalDateTime().getYear(), ts.toLocalDateTime().getMonthValue(),
+                ts.toLocalDateTime().getDayOfMonth(), ts.toLocalDateTime().getHour(), ts.toLocalDateTime().getMinute(),
+                ts.toLocalDateTime().getSecond(), ts.toLocalDateTime().getNano(), ZoneOffset.UTC);
+    }
+
+    @Benchmark
+    public Timestamp asTimestamp() {
+        return dateMapper.asTimestamp(offsetDateTime);
+    }
+}
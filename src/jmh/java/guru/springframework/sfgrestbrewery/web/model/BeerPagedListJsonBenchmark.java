@@ -0,0 +1,78 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * JSON encoding of a list page, with the object mapper configured the way boot configures it, both on its
+ * own and through the webflux encoder that writes the response body.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BeerPagedListJsonBenchmark {
+
+    @Param({"25"})
+    int pageSize;
+
+    ObjectMapper objectMapper;
+    Jackson2JsonEncoder encoder;
+    DefaultDataBufferFactory bufferFactory;
+    ResolvableType pageType;
+    BeerPagedList page;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        encoder = new Jackson2JsonEncoder(objectMapper);
+        bufferFactory = new DefaultDataBufferFactory();
+        pageType = ResolvableType.forClass(BeerPagedList.class);
+
+        List<BeerDto> beers = IntStream.range(0, pageSize).mapToObj(i -> BeerDto.builder()
+                .id(i)
+                .beerName("Beer " + i)
+                .beerStyle(BeerStyleEnum.values()[i % BeerStyleEnum.values().length].name())
+                .upc(String.format("%013d", i))
+                .price(new BigDecimal("9.99"))
+                .createdDate(LocalDateTime.now())
+                .build())
+                .collect(Collectors.toList());
+        page = new BeerPagedList(beers, PageRequest.of(1, pageSize), 1000, "bmV4dA");
+    }
+
+    @Benchmark
+    public byte[] objectMapper() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public int encoder() {
+        DataBuffer buffer = encoder.encodeValue(page, bufferFactory, pageType, MediaType.APPLICATION_JSON, Map.of());
+        int size = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return size;
+    }
+}
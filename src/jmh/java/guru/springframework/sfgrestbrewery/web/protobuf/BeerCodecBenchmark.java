@@ -0,0 +1,88 @@
+package guru.springframework.sfgrestbrewery.web.protobuf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Encode and decode cost of a beer and of a 25 beer page in each encoding the v2 api negotiates. The encoded
+ * sizes, the other half of the comparison, are pinned down in BeerProtobufTest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BeerCodecBenchmark {
+
+    @Param({"json", "protobuf", "cbor", "smile"})
+    String encoding;
+
+    @Param({"beer", "page"})
+    String payload;
+
+    ObjectMapper objectMapper;
+    Object value;
+    Class<?> type;
+    byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<BeerDto> beers = IntStream.range(0, 25).mapToObj(i -> BeerDto.builder()
+                .id(i)
+                .beerName("Beer " + i)
+                .beerStyle(BeerStyleEnum.values()[i % BeerStyleEnum.values().length].name())
+                .upc(String.format("%013d", i))
+                .price(new BigDecimal("9.99"))
+                .quantityOnHand(100 + i)
+                .createdDate(LocalDateTime.now())
+                .lastUpdatedDate(LocalDateTime.now())
+                .build())
+                .collect(Collectors.toList());
+        value = "beer".equals(payload) ? beers.get(0) : new BeerPagedList(beers, PageRequest.of(1, 25), 1000, "bmV4dA");
+        type = value.getClass();
+
+        switch (encoding) {
+            case "json":
+                objectMapper = Jackson2ObjectMapperBuilder.json().build();
+                break;
+            case "cbor":
+                objectMapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+                break;
+            case "smile":
+                objectMapper = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+                break;
+            default:
+                objectMapper = null;
+        }
+        encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        return objectMapper == null ? BeerProtobuf.encode(value) : objectMapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        return objectMapper == null ? BeerProtobuf.decode(encoded, type) : objectMapper.readValue(encoded, type);
+    }
+}
@@ -6,17 +6,24 @@ import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Created by jt on 3/7/21.
  */
 @Slf4j
+@Order(0)
 @RequiredArgsConstructor
 @Component
 public class BeerLoader implements CommandLineRunner {
@@ -57,317 +64,68 @@ public class BeerLoader implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
-        loadBeerObjects();
+        // waited on so nothing is served from a half loaded catalog, but it is one count and one insert
+        loadBeerObjects().block(Duration.ofSeconds(30));
     }
 
-    private synchronized void loadBeerObjects() {
-        log.debug("Loading initial data. Count is: {}", beerRepository.count().block() );
+    Mono<Void> loadBeerObjects() {
+        long start = System.nanoTime();
 
-        if (beerRepository.count().block() == 0) {
-
-            Random random = new Random();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Mango Bobs")
-                    .beerStyle(BeerStyleEnum.ALE)
-                    .upc(BEER_1_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Galaxy Cat")
-                    .beerStyle(BeerStyleEnum.PALE_ALE)
-                    .upc(BEER_2_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("No Hammers On The Bar")
-                    .beerStyle(BeerStyleEnum.WHEAT)
-                    .upc(BEER_3_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Blessed")
-                    .beerStyle(BeerStyleEnum.STOUT)
-                    .upc(BEER_4_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Adjunct Trail")
-                    .beerStyle(BeerStyleEnum.STOUT)
-                    .upc(BEER_5_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Very GGGreenn")
-                    .beerStyle(BeerStyleEnum.IPA)
-                    .upc(BEER_6_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Double Barrel Hunahpu's")
-                    .beerStyle(BeerStyleEnum.STOUT)
-                    .upc(BEER_7_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Very Hazy")
-                    .beerStyle(BeerStyleEnum.IPA)
-                    .upc(BEER_8_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("SR-71")
-                    .beerStyle(BeerStyleEnum.STOUT)
-                    .upc(BEER_9_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Pliny the Younger")
-                    .beerStyle(BeerStyleEnum.IPA)
-                    .upc(BEER_10_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Blessed")
-                    .beerStyle(BeerStyleEnum.STOUT)
-                    .upc(BEER_11_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("King Krush")
-                    .beerStyle(BeerStyleEnum.IPA)
-                    .upc(BEER_12_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("PBS Porter")
-                    .beerStyle(BeerStyleEnum.PORTER)
-                    .upc(BEER_13_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Pinball Porter")
-                    .beerStyle(BeerStyleEnum.STOUT)
-                    .upc(BEER_14_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Golden Budda")
-                    .beerStyle(BeerStyleEnum.STOUT)
-                    .upc(BEER_15_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Grand Central Red")
-                    .beerStyle(BeerStyleEnum.LAGER)
-                    .upc(BEER_16_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Pac-Man")
-                    .beerStyle(BeerStyleEnum.STOUT)
-                    .upc(BEER_17_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Ro Sham Bo")
-                    .beerStyle(BeerStyleEnum.IPA)
-                    .upc(BEER_18_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Summer Wheatly")
-                    .beerStyle(BeerStyleEnum.WHEAT)
-                    .upc(BEER_19_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Java Jill")
-                    .beerStyle(BeerStyleEnum.LAGER)
-                    .upc(BEER_20_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Bike Trail Pale")
-                    .beerStyle(BeerStyleEnum.PALE_ALE)
-                    .upc(BEER_21_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("N.Z.P")
-                    .beerStyle(BeerStyleEnum.IPA)
-                    .upc(BEER_22_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Stawberry Blond")
-                    .beerStyle(BeerStyleEnum.WHEAT)
-                    .upc(BEER_23_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Loco")
-                    .beerStyle(BeerStyleEnum.PORTER)
-                    .upc(BEER_24_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Spocktoberfest")
-                    .beerStyle(BeerStyleEnum.STOUT)
-                    .upc(BEER_25_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Beach Blond Ale")
-                    .beerStyle(BeerStyleEnum.ALE)
-                    .upc(BEER_26_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Bimini Twist IPA")
-                    .beerStyle(BeerStyleEnum.IPA)
-                    .upc(BEER_27_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Rod Bender Red Ale")
-                    .beerStyle(BeerStyleEnum.ALE)
-                    .upc(BEER_28_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
-
-            beerRepository.save(Beer.builder()
-                    .beerName("Floating Dock")
-                    .beerStyle(BeerStyleEnum.SAISON)
-                    .upc(BEER_29_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+        return beerRepository.count()
+                .doOnNext(count -> log.debug("Loading initial data. Count is: {}", count))
+                .filter(count -> count == 0)
+                .flatMap(count -> beerRepository.insertAll(initialBeers()).count())
+                .doOnNext(loaded -> log.debug("Beer Records loaded: {} in {} ms", loaded,
+                        (System.nanoTime() - start) / 1_000_000))
+                .then();
+    }
 
-            beerRepository.save(Beer.builder()
-                    .beerName("El Hefe")
-                    .beerStyle(BeerStyleEnum.WHEAT)
-                    .upc(BEER_30_UPC)
-                    .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
-                    .quantityOnHand(random.nextInt(5000))
-                    .createdDate(LocalDateTime.now())
-                    .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+    private static List<Beer> initialBeers() {
+        Random random = new Random();
+        LocalDateTime now = LocalDateTime.now();
+
+        // in id order, the tests look the first ones up by id
+        return Stream.of(
+            beer("Mango Bobs", BeerStyleEnum.ALE, BEER_1_UPC),
+            beer("Galaxy Cat", BeerStyleEnum.PALE_ALE, BEER_2_UPC),
+            beer("No Hammers On The Bar", BeerStyleEnum.WHEAT, BEER_3_UPC),
+            beer("Blessed", BeerStyleEnum.STOUT, BEER_4_UPC),
+            beer("Adjunct Trail", BeerStyleEnum.STOUT, BEER_5_UPC),
+            beer("Very GGGreenn", BeerStyleEnum.IPA, BEER_6_UPC),
+            beer("Double Barrel Hunahpu's", BeerStyleEnum.STOUT, BEER_7_UPC),
+            beer("Very Hazy", BeerStyleEnum.IPA, BEER_8_UPC),
+            beer("SR-71", BeerStyleEnum.STOUT, BEER_9_UPC),
+            beer("Pliny the Younger", BeerStyleEnum.IPA, BEER_10_UPC),
+            beer("Blessed", BeerStyleEnum.STOUT, BEER_11_UPC),
+            beer("King Krush", BeerStyleEnum.IPA, BEER_12_UPC),
+            beer("PBS Porter", BeerStyleEnum.PORTER, BEER_13_UPC),
+            beer("Pinball Porter", BeerStyleEnum.STOUT, BEER_14_UPC),
+            beer("Golden Budda", BeerStyleEnum.STOUT, BEER_15_UPC),
+            beer("Grand Central Red", BeerStyleEnum.LAGER, BEER_16_UPC),
+            beer("Pac-Man", BeerStyleEnum.STOUT, BEER_17_UPC),
+            beer("Ro Sham Bo", BeerStyleEnum.IPA, BEER_18_UPC),
+            beer("Summer Wheatly", BeerStyleEnum.WHEAT, BEER_19_UPC),
+            beer("Java Jill", BeerStyleEnum.LAGER, BEER_20_UPC),
+            beer("Bike Trail Pale", BeerStyleEnum.PALE_ALE, BEER_21_UPC),
+            beer("N.Z.P", BeerStyleEnum.IPA, BEER_22_UPC),
+            beer("Stawberry Blond", BeerStyleEnum.WHEAT, BEER_23_UPC),
+            beer("Loco", BeerStyleEnum.PORTER, BEER_24_UPC),
+            beer("Spocktoberfest", BeerStyleEnum.STOUT, BEER_25_UPC),
+            beer("Beach Blond Ale", BeerStyleEnum.ALE, BEER_26_UPC),
+            beer("Bimini Twist IPA", BeerStyleEnum.IPA, BEER_27_UPC),
+            beer("Rod Bender Red Ale", BeerStyleEnum.ALE, BEER_28_UPC),
+            beer("Floating Dock", BeerStyleEnum.SAISON, BEER_29_UPC),
+            beer("El Hefe", BeerStyleEnum.WHEAT, BEER_30_UPC)
+        ).map(builder -> builder
+                .price(new BigDecimal(BigInteger.valueOf(random.nextInt(10000)), 2))
+                .quantityOnHand(random.nextInt(5000))
+                .createdDate(now)
+                .lastModifiedDate(now)
+                .build())
+                .collect(Collectors.toList());
+    }
 
-            log.debug("Beer Records loaded: {}", beerRepository.count().block());
-        }
+    private static Beer.BeerBuilder beer(String beerName, BeerStyleEnum beerStyle, String upc) {
+        return Beer.builder().beerName(beerName).beerStyle(beerStyle).upc(upc);
     }
-}
\ No newline at end of file
+}
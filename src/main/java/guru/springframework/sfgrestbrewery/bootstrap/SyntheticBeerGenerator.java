@@ -0,0 +1,168 @@
+package guru.springframework.sfgrestbrewery.bootstrap;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Seeds a large synthetic catalog on top of the BeerLoader beers, for benchmarking and profiling at production
+ * sized data. Off unless sfg.brewery.synthetic.beers is set.
+ *
+ * Beers are generated chunk by chunk and written with multi-row inserts on a few connections at once, so memory
+ * stays flat whatever the count. The same seed always generates the same catalog.
+ */
+@Slf4j
+@Order(1)
+@Component
+public class SyntheticBeerGenerator implements CommandLineRunner {
+
+    // every BeerLoader upc starts with something else, so synthetic ones never collide with them
+    static final String UPC_PREFIX = "99";
+    private static final long UPC_RANGE = 100_000_000_000L;
+    // odd and not a multiple of 5, so coprime with UPC_RANGE: index -> upc is a bijection and every upc is unique
+    private static final long UPC_MULTIPLIER = 48_271_318_397L;
+
+    private static final String[] ADJECTIVES = {"Hazy", "Golden", "Dark", "Old", "Wild", "Double", "Little",
+            "Crooked", "Lucky", "Midnight", "Rusty", "Salty", "Velvet", "Smoked", "Foggy", "Bitter", "Sunny",
+            "Black", "Red", "Iron"};
+    private static final String[] NOUNS = {"Cat", "Dock", "Trail", "Hammer", "Harbor", "Fox", "Anchor", "Owl",
+            "Lantern", "Barrel", "Ridge", "River", "Monk", "Wolf", "Garden", "Bell", "Raven", "Orchard", "Mill",
+            "Comet"};
+
+    // roughly what a craft catalog looks like, IPAs and stouts dominate
+    private static final BeerStyleEnum[] STYLES = BeerStyleEnum.values();
+    private static final double[] STYLE_WEIGHTS = styleWeights();
+
+    private final BeerRepository beerRepository;
+    private final long beers;
+    private final int batchSize;
+    private final int concurrency;
+    private final long seed;
+
+    public SyntheticBeerGenerator(BeerRepository beerRepository,
+                                  @Value("${sfg.brewery.synthetic.beers:0}") long beers,
+                                  @Value("${sfg.brewery.synthetic.batch-size:1000}") int batchSize,
+                                  @Value("${sfg.brewery.synthetic.concurrency:4}") int concurrency,
+                                  @Value("${sfg.brewery.synthetic.seed:42}") long seed) {
+        this.beerRepository = beerRepository;
+        this.beers = beers;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.seed = seed;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (beers <= 0) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        Long generated = generate().block();
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("Generated {} synthetic beers in {} ms ({} beers/s)", generated, millis, generated * 1000 / millis);
+    }
+
+    /**
+     * Skips the chunks already in the table, so restarting against a persistent database tops the catalog up
+     * instead of failing on duplicate upcs.
+     */
+    Mono<Long> generate() {
+        long chunks = (beers + batchSize - 1) / batchSize;
+        LocalDateTime now = LocalDateTime.now();
+
+        return Flux.fromStream(() -> LongStream.range(0, chunks).boxed())
+                .flatMap(chunk -> beerRepository.findByUpc(upc(chunk * batchSize))
+                        .map(existing -> 0L)
+                        .switchIfEmpty(Mono.defer(() -> beerRepository.insertAll(chunk(chunk, now)).count())),
+                        concurrency)
+                .reduce(0L, Long::sum);
+    }
+
+    List<Beer> chunk(long chunk, LocalDateTime now) {
+        long first = chunk * batchSize;
+        long last = Math.min(beers, first + batchSize);
+        return LongStream.range(first, last).mapToObj(index -> beer(index, now)).collect(Collectors.toList());
+    }
+
+    Beer beer(long index, LocalDateTime now) {
+        // seeded per beer, so a chunk comes out the same whichever thread or run generates it
+        SplittableRandom random = new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L));
+        BeerStyleEnum style = style(random.nextDouble());
+
+        return Beer.builder()
+                .beerName(ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)]
+                        + " " + index)
+                .beerStyle(style)
+                .upc(upc(index))
+                .price(price(random, style))
+                .quantityOnHand(random.nextInt(5000))
+                .createdDate(now)
+                .lastModifiedDate(now)
+                .build();
+    }
+
+    static String upc(long index) {
+        long body = Math.floorMod(index * UPC_MULTIPLIER, UPC_RANGE);
+        return UPC_PREFIX + String.format("%011d", body);
+    }
+
+    private static BeerStyleEnum style(double draw) {
+        for (int i = 0; i < STYLES.length; i++) {
+            draw -= STYLE_WEIGHTS[i];
+            if (draw < 0) {
+                return STYLES[i];
+            }
+        }
+        return STYLES[STYLES.length - 1];
+    }
+
+    private static BigDecimal price(SplittableRandom random, BeerStyleEnum style) {
+        // most beers between 5 and 15, stouts and IPAs a little dearer, the odd barrel aged one much more
+        double base = style == BeerStyleEnum.STOUT || style == BeerStyleEnum.IPA ? 9.0 : 7.0;
+        // log-normal, the gaussian from Box-Muller as SplittableRandom has no nextGaussian before java 17
+        double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+        double price = base * Math.exp(gaussian * 0.35);
+        return BigDecimal.valueOf(Math.round(price * 100), 2);
+    }
+
+    private static double[] styleWeights() {
+        double[] weights = new double[STYLES.length];
+        double total = 0;
+        for (int i = 0; i < STYLES.length; i++) {
+            switch (STYLES[i]) {
+                case IPA:
+                    weights[i] = 30;
+                    break;
+                case STOUT:
+                    weights[i] = 15;
+                    break;
+                case PALE_ALE:
+                case LAGER:
+                    weights[i] = 12;
+                    break;
+                default:
+                    weights[i] = 5;
+            }
+            total += weights[i];
+        }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] /= total;
+        }
+        return weights;
+    }
+}
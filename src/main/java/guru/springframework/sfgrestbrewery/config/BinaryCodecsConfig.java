@@ -0,0 +1,79 @@
+package guru.springframework.sfgrestbrewery.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import guru.springframework.sfgrestbrewery.web.protobuf.BeerProtobufDecoder;
+import guru.springframework.sfgrestbrewery.web.protobuf.BeerProtobufEncoder;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Binary encodings for service to service callers. Protobuf, see BeerProtobuf, and CBOR and Smile, which
+ * are configured from boot's object mapper builder so dates and nulls come out as they do in JSON.
+ */
+@Configuration
+public class BinaryCodecsConfig {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    @Bean
+    CodecCustomizer binaryCodecsCustomizer(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder) {
+        return configurer -> {
+            configurer.customCodecs().register(new BeerProtobufEncoder());
+            configurer.customCodecs().register(new BeerProtobufDecoder());
+
+            // the builder bean is a prototype, every call hands out a fresh one
+            ObjectMapper cbor = objectMapperBuilder.getObject().factory(new CBORFactory()).build();
+            // without a media type the jackson codecs claim json, and custom codecs come before the json ones
+            configurer.customCodecs().register(new SingleValueCborEncoder(cbor));
+            configurer.customCodecs().register(new Jackson2CborDecoder(cbor, MediaType.APPLICATION_CBOR));
+
+            // spring registers smile on its own, but with a mapper that writes dates as arrays
+            ObjectMapper smile = objectMapperBuilder.getObject().factory(new SmileFactory()).build();
+            configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile, APPLICATION_SMILE));
+            configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile, APPLICATION_SMILE));
+        };
+    }
+
+    /**
+     * The response writer hands every body to encode, which spring's cbor encoder refuses, so a single value
+     * is encoded with encodeValue as the writer would do itself. Streams of beers stay JSON or protobuf.
+     */
+    private static final class SingleValueCborEncoder extends Jackson2CborEncoder {
+
+        SingleValueCborEncoder(ObjectMapper objectMapper) {
+            super(objectMapper, MediaType.APPLICATION_CBOR);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                       ResolvableType elementType, @Nullable MimeType mimeType,
+                                       @Nullable Map<String, Object> hints) {
+            if (!(inputStream instanceof Mono)) {
+                return super.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+            }
+            return Mono.from(inputStream)
+                    .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints))
+                    .flux();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package guru.springframework.sfgrestbrewery.config;
+
+/**
+ * No database connection could be acquired in time, or too many callers were already waiting for one.
+ */
+public class ConnectionPoolExhaustedException extends RuntimeException {
+
+    public ConnectionPoolExhaustedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,24 @@
+package guru.springframework.sfgrestbrewery.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Request timing per route and status is boot's http.server.requests, see application.properties for its
+ * histogram. This adds the JSON encoding stage.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // after boot's jackson customizer, which would otherwise put the plain encoder back
+    @Bean
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    CodecCustomizer timedJsonEncoderCustomizer(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return configurer -> configurer.defaultCodecs().jackson2JsonEncoder(new TimedJsonEncoder(objectMapper, meterRegistry));
+    }
+}
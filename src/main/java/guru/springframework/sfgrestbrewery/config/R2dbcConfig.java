@@ -0,0 +1,68 @@
+package guru.springframework.sfgrestbrewery.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.boot.autoconfigure.r2dbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.util.StringUtils;
+
+/**
+ * The pooled connection factory and schema setup. Sizes and timeouts come from the spring.r2dbc.pool
+ * properties; on top of what boot would build this bounds the number of callers waiting for a connection
+ * and times how long they wait.
+ */
+@Configuration
+public class R2dbcConfig {
+
+    @Value("classpath:/schema.sql")
+    Resource resource;
+
+    @Bean
+    ConnectionPool connectionFactory(R2dbcProperties properties, ResourceLoader resourceLoader, MeterRegistry meterRegistry,
+                                     @Value("${sfg.brewery.r2dbc.pool.max-pending-acquire:1000}") int maxPendingAcquire) {
+
+        ConnectionFactory connectionFactory = ConnectionFactoryBuilder
+                .of(properties, () -> EmbeddedDatabaseConnection.get(resourceLoader.getClassLoader()))
+                .build();
+
+        R2dbcProperties.Pool pool = properties.getPool();
+        ConnectionPoolConfiguration.Builder builder = ConnectionPoolConfiguration.builder(connectionFactory)
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .validationDepth(pool.getValidationDepth())
+                // beyond this many waiters a request fails straight away instead of joining the queue
+                .customizer(poolBuilder -> poolBuilder.maxPendingAcquire(maxPendingAcquire));
+        if (pool.getMaxAcquireTime() != null) {
+            builder.maxAcquireTime(pool.getMaxAcquireTime());
+        }
+        if (pool.getMaxLifeTime() != null) {
+            builder.maxLifeTime(pool.getMaxLifeTime());
+        }
+        if (StringUtils.hasText(pool.getValidationQuery())) {
+            builder.validationQuery(pool.getValidationQuery());
+        }
+
+        return new TimedConnectionPool(builder.build(), "connectionFactory", meterRegistry);
+    }
+
+    @Bean
+    ConnectionFactoryInitializer initializer(ConnectionFactory connectionFactory) {
+
+        ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
+        initializer.setConnectionFactory(connectionFactory);
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(resource));
+        return initializer;
+
+    }
+}
@@ -0,0 +1,54 @@
+package guru.springframework.sfgrestbrewery.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import reactor.core.publisher.Mono;
+import reactor.pool.PoolAcquirePendingLimitException;
+
+/**
+ * Connection pool that times every acquisition and reports a saturated pool as a
+ * {@link ConnectionPoolExhaustedException}. The pool's own gauges are bound by actuator because this is still
+ * a {@link ConnectionPool}.
+ */
+public class TimedConnectionPool extends ConnectionPool {
+
+    private final Timer acquired;
+    private final Timer exhausted;
+
+    public TimedConnectionPool(ConnectionPoolConfiguration configuration, String name, MeterRegistry meterRegistry) {
+        super(configuration);
+        this.acquired = acquireTimer(name, "acquired", meterRegistry);
+        this.exhausted = acquireTimer(name, "exhausted", meterRegistry);
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return super.create()
+                    .doOnSuccess(connection -> sample.stop(acquired))
+                    .onErrorMap(TimedConnectionPool::isSaturation, e -> {
+                        sample.stop(exhausted);
+                        return new ConnectionPoolExhaustedException("Database connection pool exhausted", e);
+                    });
+        });
+    }
+
+    // a timeout waiting for a connection or a full queue of waiters
+    private static boolean isSaturation(Throwable e) {
+        return e instanceof R2dbcTimeoutException || e instanceof PoolAcquirePendingLimitException;
+    }
+
+    private static Timer acquireTimer(String name, String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("r2dbc.pool.acquire")
+                .description("Time waited for a connection from the pool")
+                .tag("name", name)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,46 @@
+package guru.springframework.sfgrestbrewery.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Jackson encoder that times every value it serializes as beer.json.encode, tagged with the value's type.
+ * Single values, each element of a stream and whole collected lists all pass through encodeValue. The timer
+ * for a type is registered the first time it is encoded and reused after that.
+ */
+public class TimedJsonEncoder extends Jackson2JsonEncoder {
+
+    public static final String ENCODE_TIMER = "beer.json.encode";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Class<?>, Timer> timers = new ConcurrentHashMap<>();
+
+    public TimedJsonEncoder(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+        return timer(value.getClass()).record(() -> super.encodeValue(value, bufferFactory, valueType, mimeType, hints));
+    }
+
+    private Timer timer(Class<?> type) {
+        Timer timer = timers.get(type);
+        return timer != null ? timer : timers.computeIfAbsent(type, key -> Timer.builder(ENCODE_TIMER)
+                .tag("type", key.getSimpleName())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
@@ -31,7 +32,7 @@ public class Beer {
     @Id
     private Integer id;
 
-    //    @Version
+    @Version
     private Long version;
 
     private String beerName;
@@ -0,0 +1,19 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Multi-row inserts that ReactiveCrudRepository.saveAll can't do, it issues one INSERT per entity.
+ */
+public interface BeerBatchInsert {
+
+    /**
+     * Inserts the beers with one statement carrying a binding set per beer.
+     *
+     * @return the generated ids, in the order of the beers
+     */
+    Flux<Integer> insertAll(List<Beer> beers);
+}
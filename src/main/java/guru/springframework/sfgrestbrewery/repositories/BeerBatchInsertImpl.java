@@ -0,0 +1,60 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+class BeerBatchInsertImpl implements BeerBatchInsert {
+
+    private static final String INSERT_BEER = "INSERT INTO beer (beer_name, beer_style, upc, version, quantity_on_hand, price, "
+            + "created_date, last_modified_date) VALUES ($1, $2, $3, $4, $5, $6, $7, $8)";
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Flux<Integer> insertAll(List<Beer> beers) {
+
+        if (beers.isEmpty()) {
+            return Flux.empty();
+        }
+
+        return databaseClient.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(INSERT_BEER).returnGeneratedValues("id");
+            for (int i = 0; i < beers.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                bind(statement, beers.get(i));
+            }
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.map((row, metadata) -> row.get("id", Integer.class)));
+        });
+    }
+
+    private void bind(Statement statement, Beer beer) {
+        bindOrNull(statement, 0, beer.getBeerName(), String.class);
+        bindOrNull(statement, 1, beer.getBeerStyle() == null ? null : beer.getBeerStyle().name(), String.class);
+        bindOrNull(statement, 2, beer.getUpc(), String.class);
+        // same initial version spring data assigns on save, a null one would make the row look new on update
+        bindOrNull(statement, 3, beer.getVersion() == null ? Long.valueOf(0) : beer.getVersion(), Long.class);
+        bindOrNull(statement, 4, beer.getQuantityOnHand(), Integer.class);
+        bindOrNull(statement, 5, beer.getPrice(), BigDecimal.class);
+        bindOrNull(statement, 6, beer.getCreatedDate(), LocalDateTime.class);
+        bindOrNull(statement, 7, beer.getLastModifiedDate(), LocalDateTime.class);
+    }
+
+    private void bindOrNull(Statement statement, int index, Object value, Class<?> type) {
+        if (value == null) {
+            statement.bindNull(index, type);
+        } else {
+            statement.bind(index, value);
+        }
+    }
+}
@@ -7,13 +7,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 //import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
 import java.util.UUID;
 
 
-public interface BeerRepository extends ReactiveCrudRepository<Beer, Integer> {
+public interface BeerRepository extends ReactiveCrudRepository<Beer, Integer>, BeerBatchInsert {
     Mono<Beer> findByUpc(String upc);
+
+    Flux<Beer> findAllByUpcIn(Collection<String> upcs);
 //    Page<Beer> findAllByBeerName(String beerName, Pageable pageable);
 //
 //    Page<Beer> findAllByBeerStyle(BeerStyleEnum beerStyle, Pageable pageable);
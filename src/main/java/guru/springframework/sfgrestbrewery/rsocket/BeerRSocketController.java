@@ -0,0 +1,61 @@
+package guru.springframework.sfgrestbrewery.rsocket;
+
+import guru.springframework.sfgrestbrewery.services.BeerService;
+import guru.springframework.sfgrestbrewery.web.model.BeerBatchGetResult;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * BeerService over RSocket, for internal callers that keep one connection open instead of paying for an HTTP
+ * exchange per lookup. Served on TCP and on WebSocket, see RSocketTcpServer.
+ *
+ * beer.id and beer.upc are request-response and complete empty for an unknown beer. beer.stream is
+ * request-stream, rows are read as the requester asks for them. beer.upcs is request-channel: upcs flow in
+ * as fast as results are taken out, answered in the order they came.
+ */
+@Slf4j
+@Controller
+@RequiredArgsConstructor
+public class BeerRSocketController {
+
+    private final BeerService beerService;
+
+    @Value("${sfg.brewery.rsocket.upc-concurrency:16}")
+    int upcConcurrency;
+
+    @Value("${sfg.brewery.rsocket.upc-prefetch:64}")
+    int upcPrefetch;
+
+    @MessageMapping("beer.id")
+    public Mono<BeerDto> getBeerById(Integer beerId) {
+        return beerService.getById(beerId, false);
+    }
+
+    @MessageMapping("beer.upc")
+    public Mono<BeerDto> getBeerByUpc(String upc) {
+        return beerService.getByUpc(upc);
+    }
+
+    @MessageMapping("beer.stream")
+    public Flux<BeerDto> streamBeers(BeerStreamRequest request) {
+        return beerService.streamBeers(request.getBeerName(), request.getBeerStyle(),
+                Boolean.TRUE.equals(request.getShowInventoryOnHand()));
+    }
+
+    @MessageMapping("beer.upcs")
+    public Flux<BeerBatchGetResult> resolveUpcs(Flux<String> upcs) {
+        // the inbound side asks the requester for upcs in chunks, and only as lookups finish and their
+        // results are taken, so a slow consumer slows the producer down instead of queueing here
+        return upcs.limitRate(upcPrefetch)
+                .flatMapSequential(upc -> beerService.getByUpc(upc)
+                        .map(beer -> BeerBatchGetResult.builder().key(upc).found(true).beer(beer).build())
+                        .defaultIfEmpty(BeerBatchGetResult.builder().key(upc).found(false).build()),
+                        upcConcurrency);
+    }
+}
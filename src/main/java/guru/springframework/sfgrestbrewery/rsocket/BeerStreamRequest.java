@@ -0,0 +1,21 @@
+package guru.springframework.sfgrestbrewery.rsocket;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Filter of a beer.stream request, every field optional.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerStreamRequest {
+
+    private String beerName;
+    private BeerStyleEnum beerStyle;
+    private Boolean showInventoryOnHand;
+}
@@ -0,0 +1,69 @@
+package guru.springframework.sfgrestbrewery.rsocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.rsocket.netty.NettyRSocketServerFactory;
+import org.springframework.boot.rsocket.server.RSocketServer;
+import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Collectors;
+
+/**
+ * The TCP transport. Boot runs one RSocket server, the WebSocket one mapped onto the WebFlux port at
+ * spring.rsocket.server.mapping-path, so TCP is started here next to it with the same responder.
+ *
+ * It follows the web server up, which keeps it out of tests that run against a mock server.
+ */
+@Slf4j
+@Component
+public class RSocketTcpServer implements ApplicationListener<ReactiveWebServerInitializedEvent>, DisposableBean {
+
+    private final RSocketMessageHandler messageHandler;
+    private final ObjectProvider<RSocketServerCustomizer> customizers;
+    private final int port;
+
+    private RSocketServer server;
+
+    public RSocketTcpServer(RSocketMessageHandler messageHandler, ObjectProvider<RSocketServerCustomizer> customizers,
+                            @Value("${sfg.brewery.rsocket.tcp-port:7000}") int port) {
+        this.messageHandler = messageHandler;
+        this.customizers = customizers;
+        this.port = port;
+    }
+
+    @Override
+    public void onApplicationEvent(ReactiveWebServerInitializedEvent event) {
+        // the management server, when it runs on a port of its own, announces itself too
+        if (server != null || event.getApplicationContext().getServerNamespace() != null) {
+            return;
+        }
+        NettyRSocketServerFactory factory = new NettyRSocketServerFactory();
+        factory.setTransport(RSocketServer.Transport.TCP);
+        factory.setPort(port);
+        factory.setRSocketServerCustomizers(customizers.orderedStream().collect(Collectors.toList()));
+
+        server = factory.create(messageHandler.responder());
+        server.start();
+        log.info("RSocket TCP server started on port {}", getPort());
+    }
+
+    /**
+     * The bound port, for when the configured one was 0. -1 before the server started.
+     */
+    public int getPort() {
+        return server == null ? -1 : server.address().getPort();
+    }
+
+    @Override
+    public void destroy() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
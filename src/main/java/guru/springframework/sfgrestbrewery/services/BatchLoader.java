@@ -0,0 +1,199 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * DataLoader style batching. Keys requested independently are collected for up to {@code window}
+ * or until {@code maxBatchSize} keys are waiting, loaded with one call to the batch function and
+ * handed back to each caller. Keys the batch function returns nothing for complete empty.
+ *
+ * At most {@code concurrency} batches run at once, the ones closed while that many are running
+ * wait their turn, so slow batches delay later keys but never lose them.
+ */
+@Slf4j
+public class BatchLoader<K, V> {
+
+    private final String name;
+    private final Function<Collection<K>, Flux<V>> batchFunction;
+    private final Function<V, K> keyOf;
+    private final int maxBatchSize;
+    private final Duration window;
+    private final int concurrency;
+    private final Scheduler scheduler;
+    private final Timer waitTimer;
+    private final DistributionSummary batchSize;
+
+    // guarded by itself
+    private final Deque<List<Request<K, V>>> ready = new ArrayDeque<>();
+    private List<Request<K, V>> pending = new ArrayList<>();
+    // tells a window's flush apart from the one of a window already closed because it filled up
+    private long windows;
+    private int running;
+    private boolean disposed;
+
+    private final AtomicInteger draining = new AtomicInteger();
+
+    public BatchLoader(String name, Function<Collection<K>, Flux<V>> batchFunction, Function<V, K> keyOf,
+                       int maxBatchSize, Duration window, int concurrency, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.batchFunction = batchFunction;
+        this.keyOf = keyOf;
+        this.maxBatchSize = maxBatchSize;
+        this.window = window;
+        this.concurrency = concurrency;
+        this.scheduler = Schedulers.parallel();
+        this.waitTimer = Timer.builder("beer.lookup.batch.wait")
+                .description("Time a key waited for its batch to be dispatched")
+                .tag("lookup", name)
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("beer.lookup.batch.size")
+                .description("Keys loaded per batch query")
+                .tag("lookup", name)
+                .register(meterRegistry);
+    }
+
+    public Mono<V> load(K key) {
+        return Mono.defer(() -> {
+            Request<K, V> request = new Request<>(key, Sinks.one(), System.nanoTime());
+            boolean full;
+            synchronized (ready) {
+                if (disposed) {
+                    return Mono.error(new IllegalStateException("Batch loader " + name + " is stopped"));
+                }
+                pending.add(request);
+                full = pending.size() >= maxBatchSize;
+                if (full) {
+                    closeWindow();
+                } else if (pending.size() == 1) {
+                    long opened = windows;
+                    scheduler.schedule(() -> flush(opened), window.toNanos(), TimeUnit.NANOSECONDS);
+                }
+            }
+            if (full) {
+                drain();
+            }
+            return request.result.asMono();
+        });
+    }
+
+    public void dispose() {
+        List<Request<K, V>> abandoned = new ArrayList<>();
+        synchronized (ready) {
+            disposed = true;
+            abandoned.addAll(pending);
+            pending.clear();
+            ready.forEach(abandoned::addAll);
+            ready.clear();
+        }
+        // batches already running finish on their own
+        IllegalStateException stopped = new IllegalStateException("Batch loader " + name + " is stopped");
+        abandoned.forEach(request -> request.result.tryEmitError(stopped));
+    }
+
+    private void flush(long window) {
+        synchronized (ready) {
+            if (window != windows || pending.isEmpty()) {
+                return;
+            }
+            closeWindow();
+        }
+        drain();
+    }
+
+    // called holding the lock
+    private void closeWindow() {
+        ready.add(pending);
+        pending = new ArrayList<>();
+        windows++;
+    }
+
+    /**
+     * Starts the batches that are ready while fewer than {@code concurrency} run. Only one thread drains at a
+     * time, one that finds another at it leaves it a note to go round again, so a batch that completes right
+     * away doesn't start the next one from inside its own completion.
+     */
+    private void drain() {
+        if (draining.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (true) {
+                List<Request<K, V>> batch;
+                synchronized (ready) {
+                    if (running >= concurrency || ready.isEmpty()) {
+                        break;
+                    }
+                    running++;
+                    batch = ready.poll();
+                }
+                dispatch(batch).doFinally(signal -> finished()).subscribe();
+            }
+            missed = draining.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void finished() {
+        synchronized (ready) {
+            running--;
+        }
+        drain();
+    }
+
+    private Mono<Void> dispatch(List<Request<K, V>> batch) {
+        long dispatched = System.nanoTime();
+        batchSize.record(batch.size());
+
+        Map<K, List<Request<K, V>>> waiting = new HashMap<>();
+        for (Request<K, V> request : batch) {
+            waitTimer.record(dispatched - request.enqueued, TimeUnit.NANOSECONDS);
+            waiting.computeIfAbsent(request.key, key -> new ArrayList<>(1)).add(request);
+        }
+
+        return Flux.defer(() -> batchFunction.apply(new ArrayList<>(waiting.keySet())))
+                .doOnNext(value -> {
+                    List<Request<K, V>> requestsForKey = waiting.remove(keyOf.apply(value));
+                    if (requestsForKey != null) {
+                        requestsForKey.forEach(request -> request.result.tryEmitValue(value));
+                    }
+                })
+                .doOnComplete(() -> waiting.values().forEach(requestsForKey ->
+                        requestsForKey.forEach(request -> request.result.tryEmitEmpty())))
+                .doOnError(e -> {
+                    log.debug("Batch of {} keys failed", batch.size(), e);
+                    waiting.values().forEach(requestsForKey ->
+                            requestsForKey.forEach(request -> request.result.tryEmitError(e)));
+                })
+                .then()
+                // its callers have the error, the loader carries on with the next batch
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    @RequiredArgsConstructor
+    private static final class Request<K, V> {
+        private final K key;
+        private final Sinks.One<V> result;
+        private final long enqueued;
+    }
+}
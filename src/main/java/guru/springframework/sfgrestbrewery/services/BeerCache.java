@@ -0,0 +1,129 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerJson;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Caches resolved beer values, not the Mono that would produce them. Loads for the same key share
+ * one future, empty results are not cached and failed loads are dropped so the next call retries.
+ *
+ * Next to the values it keeps the encoded JSON of the hottest beers, so a hit is written out without
+ * going through Jackson again. Evicting a beer drops both.
+ */
+@Slf4j
+@Component
+public class BeerCache {
+
+    public static final String BEER_CACHE = "beerCache";
+    public static final String BEER_UPC_CACHE = "beerUpcCache";
+    public static final String BEER_LIST_CACHE = "beerListCache";
+    public static final String BEER_JSON_CACHE = "beerJsonCache";
+    public static final String BEER_UPC_JSON_CACHE = "beerUpcJsonCache";
+
+    private final AsyncCache<Integer, BeerDto> beerCache;
+    private final AsyncCache<String, BeerDto> beerUpcCache;
+    private final AsyncCache<BeerListKey, BeerPagedList> beerListCache;
+    private final AsyncCache<Integer, BeerJson> beerJsonCache;
+    private final AsyncCache<String, BeerJson> beerUpcJsonCache;
+
+    public BeerCache(MeterRegistry meterRegistry,
+                     @Value("${sfg.brewery.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${sfg.brewery.cache.list-maximum-size:1000}") long listMaximumSize,
+                     @Value("${sfg.brewery.cache.json-maximum-size:5000}") long jsonMaximumSize,
+                     @Value("${sfg.brewery.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+
+        this.beerCache = CaffeineCacheMetrics.monitor(meterRegistry, build(maximumSize, expireAfterWrite), BEER_CACHE);
+        this.beerUpcCache = CaffeineCacheMetrics.monitor(meterRegistry, build(maximumSize, expireAfterWrite), BEER_UPC_CACHE);
+        this.beerListCache = CaffeineCacheMetrics.monitor(meterRegistry, build(listMaximumSize, expireAfterWrite), BEER_LIST_CACHE);
+        this.beerJsonCache = CaffeineCacheMetrics.monitor(meterRegistry, build(jsonMaximumSize, expireAfterWrite), BEER_JSON_CACHE);
+        this.beerUpcJsonCache = CaffeineCacheMetrics.monitor(meterRegistry, build(jsonMaximumSize, expireAfterWrite), BEER_UPC_JSON_CACHE);
+    }
+
+    public Mono<BeerDto> getById(Integer beerId, Supplier<Mono<BeerDto>> loader) {
+        return get(beerCache, beerId, loader);
+    }
+
+    public Mono<BeerDto> getByUpc(String upc, Supplier<Mono<BeerDto>> loader) {
+        return get(beerUpcCache, upc, loader);
+    }
+
+    public Mono<BeerJson> getJsonById(Integer beerId, Supplier<Mono<BeerJson>> loader) {
+        return get(beerJsonCache, beerId, loader);
+    }
+
+    public Mono<BeerJson> getJsonByUpc(String upc, Supplier<Mono<BeerJson>> loader) {
+        return get(beerUpcJsonCache, upc, loader);
+    }
+
+    public Mono<BeerPagedList> getList(BeerListKey key, Supplier<Mono<BeerPagedList>> loader) {
+        return get(beerListCache, key, loader);
+    }
+
+    /**
+     * Drops every cached view of a beer. Any list page could contain it, so the list cache goes too.
+     */
+    public void evict(Integer beerId, String... upcs) {
+        evictBeer(beerId, upcs);
+        evictLists();
+    }
+
+    /**
+     * Drops a beer's own entries but keeps the list pages, for changes that only move its version and
+     * inventory, neither of which a cached page shows.
+     */
+    public void evictBeer(Integer beerId, String... upcs) {
+        log.debug("Evicting beer {}", beerId);
+        if (beerId != null) {
+            beerCache.synchronous().invalidate(beerId);
+            beerJsonCache.synchronous().invalidate(beerId);
+        }
+        for (String upc : upcs) {
+            if (upc != null) {
+                beerUpcCache.synchronous().invalidate(upc);
+                beerUpcJsonCache.synchronous().invalidate(upc);
+            }
+        }
+    }
+
+    public void evictLists() {
+        beerListCache.synchronous().invalidateAll();
+    }
+
+    private <K, V> Mono<V> get(AsyncCache<K, V> cache, K key, Supplier<Mono<V>> loader) {
+        // a future completed with null is removed by caffeine and comes back as an empty Mono
+        return Mono.defer(() -> Mono.fromFuture(cache.get(key, (k, executor) -> loader.get().toFuture())));
+    }
+
+    private static <K, V> AsyncCache<K, V> build(long maximumSize, Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    public static final class BeerListKey {
+        private final String beerName;
+        private final BeerStyleEnum beerStyle;
+        private final PageRequest pageRequest;
+        private final String cursor;
+    }
+}
@@ -0,0 +1,126 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import lombok.Getter;
+import org.springframework.data.r2dbc.query.Criteria;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+
+import static org.springframework.data.r2dbc.query.Criteria.where;
+
+/**
+ * Opaque keyset cursor for beer listings. It remembers the sort key, the page it was issued for
+ * and the (sort value, id) of the last row returned, so the next page is a seek on the index
+ * rather than an OFFSET scan.
+ */
+@Getter
+public class BeerCursor {
+
+    public static final String DEFAULT_SORT_KEY = "id";
+
+    // each of these has a (sort key, id) index, see schema.sql
+    static final Set<String> SORT_KEYS = Set.of("id", "beerName", "price");
+
+    private static final String SEPARATOR = "\n";
+
+    private final String sortKey;
+    private final int page;
+    private final Integer lastId;
+    private final String lastValue;
+
+    BeerCursor(String sortKey, int page, Integer lastId, String lastValue) {
+        this.sortKey = sortKey;
+        this.page = page;
+        this.lastId = lastId;
+        this.lastValue = lastValue;
+    }
+
+    /**
+     * Returns the sort key, or the id column when unsorted. Only keys with an index can be paged on,
+     * anything else is rejected rather than quietly sorted by id.
+     */
+    public static String sortKeyOf(Sort sort) {
+        Sort.Order order = sort.stream().findFirst().orElse(null);
+        if (order == null) {
+            return DEFAULT_SORT_KEY;
+        }
+        if (!SORT_KEYS.contains(order.getProperty())) {
+            throw new IllegalArgumentException("Unsupported sort key " + order.getProperty());
+        }
+        return order.getProperty();
+    }
+
+    /**
+     * Always break ties on the id so the ordering is total and the seek predicate is exact.
+     */
+    public static Sort sortFor(String sortKey) {
+        return DEFAULT_SORT_KEY.equals(sortKey) ? Sort.by(DEFAULT_SORT_KEY) : Sort.by(sortKey, DEFAULT_SORT_KEY);
+    }
+
+    public static BeerCursor after(String sortKey, int page, BeerDto lastBeer) {
+        return new BeerCursor(sortKey, page, lastBeer.getId(), valueOf(sortKey, lastBeer));
+    }
+
+    public static BeerCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(SEPARATOR, 4);
+            if (parts.length < 3 || !SORT_KEYS.contains(parts[0])) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new BeerCursor(parts[0], Integer.parseInt(parts[1]), Integer.valueOf(parts[2]),
+                    parts.length == 4 ? parts[3] : null);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor " + token, e);
+        }
+    }
+
+    public String encode() {
+        StringBuilder sb = new StringBuilder()
+                .append(sortKey).append(SEPARATOR)
+                .append(page).append(SEPARATOR)
+                .append(lastId);
+        if (lastValue != null) {
+            sb.append(SEPARATOR).append(lastValue);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Rows strictly after (lastValue, lastId) in ascending (sortKey, id) order. H2 sorts nulls first,
+     * so a null last value means the remaining nulls with a higher id, then every non null value.
+     */
+    public Criteria seekCriteria() {
+        if (DEFAULT_SORT_KEY.equals(sortKey)) {
+            return where(DEFAULT_SORT_KEY).greaterThan(lastId);
+        }
+        if (lastValue == null) {
+            return where(sortKey).isNull().and(DEFAULT_SORT_KEY).greaterThan(lastId)
+                    .or(where(sortKey).isNotNull());
+        }
+        // same rows as "value > ? OR (value = ? AND id > ?)", written with a leading range on the
+        // sort key so the (sort key, id) index can be used for the seek
+        Object value = typedValue();
+        return where(sortKey).greaterThanOrEquals(value)
+                .and(where(sortKey).greaterThan(value).or(DEFAULT_SORT_KEY).greaterThan(lastId));
+    }
+
+    private Object typedValue() {
+        return "price".equals(sortKey) ? new BigDecimal(lastValue) : lastValue;
+    }
+
+    private static String valueOf(String sortKey, BeerDto beer) {
+        switch (sortKey) {
+            case "beerName":
+                return beer.getBeerName();
+            case "price":
+                return beer.getPrice() == null ? null : beer.getPrice().toPlainString();
+            default:
+                return String.valueOf(beer.getId());
+        }
+    }
+}
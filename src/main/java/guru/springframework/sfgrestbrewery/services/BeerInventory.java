@@ -0,0 +1,224 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.controller.InsufficientInventoryException;
+import guru.springframework.sfgrestbrewery.web.controller.NotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional write-behind inventory. When enabled, quantity on hand is kept in memory per beer, adjustments
+ * are checked and applied there, and the summed deltas are written to the database every flush interval,
+ * or sooner once a beer has collected flush-threshold units. A hot beer then costs one row write per
+ * flush instead of one per sale.
+ *
+ * A beer's counter is loaded from the database on first use, so a restart picks up whatever was last
+ * flushed. Everything pending is flushed on shutdown; a crash loses at most the unflushed deltas.
+ */
+@Slf4j
+@Component
+public class BeerInventory {
+
+    // the database only ever receives deltas already accepted in memory, so no stock check is needed here
+    private static final String FLUSH_INVENTORY = "UPDATE beer SET quantity_on_hand = COALESCE(quantity_on_hand, 0) + $1, "
+            + "version = COALESCE(version, 0) + 1 WHERE id = $2";
+
+    private final boolean enabled;
+    private final long flushThreshold;
+    private final BeerLookup beerLookup;
+    private final BeerCache beerCache;
+    private final BeerReadModel beerReadModel;
+    private final R2dbcEntityTemplate r2dbcEntityTemplate;
+    private final Counter flushes;
+
+    private final Map<Integer, OnHand> counters = new ConcurrentHashMap<>();
+    private final Disposable flushSchedule;
+
+    public BeerInventory(BeerLookup beerLookup, BeerCache beerCache, BeerReadModel beerReadModel,
+                         R2dbcEntityTemplate r2dbcEntityTemplate,
+                         MeterRegistry meterRegistry,
+                         @Value("${sfg.brewery.inventory.write-behind.enabled:false}") boolean enabled,
+                         @Value("${sfg.brewery.inventory.write-behind.flush-interval:1s}") Duration flushInterval,
+                         @Value("${sfg.brewery.inventory.write-behind.flush-threshold:100}") long flushThreshold) {
+        this.enabled = enabled;
+        this.flushThreshold = flushThreshold;
+        this.beerLookup = beerLookup;
+        this.beerCache = beerCache;
+        this.beerReadModel = beerReadModel;
+        this.r2dbcEntityTemplate = r2dbcEntityTemplate;
+
+        this.flushes = Counter.builder("beer.inventory.flushes")
+                .description("Inventory deltas written to the database")
+                .register(meterRegistry);
+        Gauge.builder("beer.inventory.unflushed", counters,
+                        onHands -> onHands.values().stream().mapToLong(onHand -> Math.abs(onHand.unflushed.sum())).sum())
+                .description("Units adjusted in memory and not yet written to the database")
+                .register(meterRegistry);
+
+        this.flushSchedule = enabled
+                ? Flux.interval(flushInterval).onBackpressureDrop().concatMap(tick -> flush()).subscribe()
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The in memory quantity on hand, or null if the beer isn't tracked and the database value is current.
+     */
+    public Integer quantityOnHand(Integer beerId) {
+        OnHand onHand = enabled ? counters.get(beerId) : null;
+        return onHand == null ? null : (int) onHand.available.get();
+    }
+
+    /**
+     * Applies delta and returns the new quantity on hand. Errors with NotFoundException for an unknown beer
+     * and InsufficientInventoryException if the stock would go negative.
+     */
+    public Mono<Integer> adjust(Integer beerId, int delta) {
+        return counter(beerId).map(onHand -> {
+            long available = onHand.adjust(delta);
+            if (available < 0) {
+                throw new InsufficientInventoryException("Beer " + beerId + " has " + onHand.available.get()
+                        + " on hand, cannot adjust by " + delta);
+            }
+            if (Math.abs(onHand.unflushed.sum()) >= flushThreshold) {
+                flush(beerId, onHand).subscribe();
+            }
+            return (int) available;
+        });
+    }
+
+    /**
+     * Stops tracking a deleted beer, anything unflushed for it has no row left to go to.
+     */
+    public void forget(Integer beerId) {
+        counters.remove(beerId);
+    }
+
+    public Mono<Void> flush() {
+        return Flux.fromIterable(counters.entrySet())
+                .concatMap(entry -> flush(entry.getKey(), entry.getValue()))
+                .then();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flushSchedule != null) {
+            flushSchedule.dispose();
+            flush().block();
+            log.info("Flushed inventory of {} beers on shutdown", counters.size());
+        }
+    }
+
+    private Mono<OnHand> counter(Integer beerId) {
+        return Mono.defer(() -> {
+            OnHand onHand = counters.get(beerId);
+            if (onHand != null) {
+                return Mono.just(onHand);
+            }
+            // nothing is pending for an untracked beer, so the row holds the current stock. If two callers
+            // race to load it they read the same value and the first one in wins
+            return beerLookup.findById(beerId)
+                    .switchIfEmpty(Mono.error(new NotFoundException()))
+                    .map(beer -> counters.computeIfAbsent(beerId, id -> new OnHand(quantityOf(beer))));
+        });
+    }
+
+    private Mono<Void> flush(Integer beerId, OnHand onHand) {
+        return Mono.defer(() -> {
+            if (!onHand.flushing.compareAndSet(false, true)) {
+                return Mono.empty();
+            }
+            long delta = onHand.unflushed.sum();
+            if (delta == 0) {
+                onHand.flushing.set(false);
+                return Mono.empty();
+            }
+            return r2dbcEntityTemplate.getDatabaseClient().sql(FLUSH_INVENTORY)
+                    .bind(0, (int) delta)
+                    .bind(1, beerId)
+                    .fetch()
+                    .rowsUpdated()
+                    // subtract what was written rather than reset, adjustments made meanwhile stay pending
+                    .doOnSuccess(updated -> {
+                        onHand.unflushed.add(-delta);
+                        flushes.increment();
+                    })
+                    .doOnError(e -> log.warn("Flushing inventory delta {} of beer {} failed, will retry", delta, beerId, e))
+                    .onErrorResume(e -> Mono.empty())
+                    .then(evictCached(beerId))
+                    .doFinally(signal -> onHand.flushing.set(false));
+        });
+    }
+
+    /**
+     * A flush bumps the version, so the cached beer and the ETag it was served with are stale, and the read
+     * model takes the row as it is now.
+     */
+    private Mono<Void> evictCached(Integer beerId) {
+        return Mono.defer(() -> beerLookup.findById(beerId))
+                .doOnNext(beer -> {
+                    beerReadModel.put(beer);
+                    beerCache.evictBeer(beerId, beer.getUpc());
+                })
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private static long quantityOf(Beer beer) {
+        return beer.getQuantityOnHand() == null ? 0 : beer.getQuantityOnHand();
+    }
+
+    private static final class OnHand {
+
+        // a sale must check and take stock in one step, so availability is a single CAS counter
+        private final AtomicLong available;
+        // striped, many adjustments add to it at once and only the flush reads it
+        private final LongAdder unflushed = new LongAdder();
+        private final AtomicBoolean flushing = new AtomicBoolean();
+
+        private OnHand(long available) {
+            this.available = new AtomicLong(available);
+        }
+
+        /**
+         * Returns the new quantity, or -1 without changing anything if it would go negative.
+         *
+         * Additions are recorded as unflushed before they become available and removals only after they
+         * succeeded, so a flush can never write the database below what is really on hand.
+         */
+        private long adjust(int delta) {
+            if (delta >= 0) {
+                unflushed.add(delta);
+                return available.addAndGet(delta);
+            }
+            long current;
+            do {
+                current = available.get();
+                if (current + delta < 0) {
+                    return -1;
+                }
+            } while (!available.compareAndSet(current, current + delta));
+            unflushed.add(delta);
+            return current + delta;
+        }
+    }
+}
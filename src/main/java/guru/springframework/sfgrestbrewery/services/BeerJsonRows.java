@@ -0,0 +1,132 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.r2dbc.spi.Row;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.core.StatementMapper;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.core.PreparedOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Streams beers as JSON written straight from the R2DBC rows into the response buffers, without building a
+ * Beer or a BeerDto on the way. Field names, order and formatting are the ones the object mapper gives a
+ * BeerDto, dates go through the mapper's own serializers so they can't drift from it.
+ *
+ * The fast path behind sfg.brewery.stream.row-json.enabled, see BeerHandler.streamBeers. Per row it takes
+ * about a third of the time and allocation of the mapped path (BeerJsonRowsBenchmark in src/jmh/baseline).
+ * Over a whole 1030 beer stream that is a few milliseconds out of tens spent on the query and the socket,
+ * see the row-json reports in src/loadtest/baseline, which is why it stays off by default.
+ */
+@Component
+public class BeerJsonRows {
+
+    private static final SqlIdentifier BEER_TABLE = SqlIdentifier.unquoted("beer");
+    private static final SqlIdentifier[] COLUMNS = {SqlIdentifier.unquoted("id"), SqlIdentifier.unquoted("beer_name"),
+            SqlIdentifier.unquoted("beer_style"), SqlIdentifier.unquoted("upc"), SqlIdentifier.unquoted("price"),
+            SqlIdentifier.unquoted("quantity_on_hand"), SqlIdentifier.unquoted("created_date"),
+            SqlIdentifier.unquoted("last_modified_date")};
+
+    // a row is a couple of hundred bytes, netty grows the buffer if one is longer
+    private static final int ROW_BUFFER_SIZE = 256;
+
+    private final R2dbcEntityTemplate r2dbcEntityTemplate;
+    private final ObjectMapper objectMapper;
+    private final BeerInventory beerInventory;
+    private final BeerMetrics beerMetrics;
+    private final BeerQueryLimiter beerQueryLimiter;
+
+    public BeerJsonRows(R2dbcEntityTemplate r2dbcEntityTemplate, ObjectMapper objectMapper, BeerInventory beerInventory,
+                        BeerMetrics beerMetrics, BeerQueryLimiter beerQueryLimiter) {
+        this.r2dbcEntityTemplate = r2dbcEntityTemplate;
+        this.objectMapper = objectMapper;
+        this.beerInventory = beerInventory;
+        this.beerMetrics = beerMetrics;
+        this.beerQueryLimiter = beerQueryLimiter;
+    }
+
+    /**
+     * One buffer per beer, holding prefix + JSON + suffix, so the caller picks the framing (NDJSON, SSE).
+     */
+    public Flux<DataBuffer> stream(String beerName, BeerStyleEnum beerStyle, boolean showInventoryOnHand,
+                                   DataBufferFactory bufferFactory, byte[] prefix, byte[] suffix) {
+
+        StatementMapper statementMapper = r2dbcEntityTemplate.getDataAccessStrategy().getStatementMapper().forType(Beer.class);
+        StatementMapper.SelectSpec select = statementMapper.createSelect(BEER_TABLE)
+                .withProjection(COLUMNS)
+                .withCriteria(BeerServiceImpl.filterCriteria(beerName, beerStyle))
+                .withSort(BeerCursor.sortFor(BeerCursor.DEFAULT_SORT_KEY));
+        PreparedOperation<?> operation = statementMapper.getMappedObject(select);
+
+        Flux<DataBuffer> rows = r2dbcEntityTemplate.getDatabaseClient().sql(operation)
+                .map((row, metadata) -> {
+                    DataBuffer buffer = bufferFactory.allocateBuffer(ROW_BUFFER_SIZE);
+                    try {
+                        buffer.write(prefix);
+                        write(row, showInventoryOnHand, buffer.asOutputStream());
+                        return buffer.write(suffix);
+                    } catch (RuntimeException e) {
+                        DataBufferUtils.release(buffer);
+                        throw e;
+                    }
+                })
+                .all();
+
+        // limited like every other beer query, so whole-table streams can't crowd out point lookups
+        return beerMetrics.uncached("streamBeersJson", beerQueryLimiter.limit(beerMetrics.db("streamBeersJson", rows)));
+    }
+
+    // package private for BeerJsonRowsBenchmark
+    void write(Row row, boolean showInventoryOnHand, OutputStream out) {
+        Integer id = row.get("id", Integer.class);
+        Integer quantityOnHand = null;
+        if (showInventoryOnHand) {
+            Integer pending = beerInventory.quantityOnHand(id);
+            quantityOnHand = pending != null ? pending : row.get("quantity_on_hand", Integer.class);
+        }
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            writeNumber(generator, "id", id);
+            generator.writeStringField("beerName", row.get("beer_name", String.class));
+            generator.writeStringField("beerStyle", row.get("beer_style", String.class));
+            generator.writeStringField("upc", row.get("upc", String.class));
+            BigDecimal price = row.get("price", BigDecimal.class);
+            generator.writeFieldName("price");
+            if (price == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(price);
+            }
+            writeNumber(generator, "quantityOnHand", quantityOnHand);
+            generator.writeObjectField("createdDate", row.get("created_date", LocalDateTime.class));
+            generator.writeObjectField("lastUpdatedDate", row.get("last_modified_date", LocalDateTime.class));
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNumber(JsonGenerator generator, String field, Integer value) throws IOException {
+        generator.writeFieldName(field);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * Point lookups of a single beer. Concurrent lookups of the same id or upc share one repository call,
+ * and lookups of different ids arriving within the batch window are loaded with a single IN query. Only the
+ * queries that are actually run count against the BeerQueryLimiter, not every caller sharing one.
+ */
+@Component
+public class BeerLookup {
+
+    private final RequestCoalescer<Integer, Beer> byId;
+    private final RequestCoalescer<String, Beer> byUpc;
+    private final BatchLoader<Integer, Beer> idBatches;
+
+    public BeerLookup(BeerRepository beerRepository, BeerQueryLimiter beerQueryLimiter, MeterRegistry meterRegistry,
+                      @Value("${sfg.brewery.lookup.batch-window:1ms}") Duration batchWindow,
+                      @Value("${sfg.brewery.lookup.max-batch-size:100}") int maxBatchSize,
+                      @Value("${sfg.brewery.lookup.batch-concurrency:4}") int batchConcurrency) {
+
+        if (batchWindow.isZero()) {
+            this.idBatches = null;
+            this.byId = new RequestCoalescer<>("id", id -> beerQueryLimiter.limit(beerRepository.findById(id)), meterRegistry);
+        } else {
+            this.idBatches = new BatchLoader<>("id", ids -> beerQueryLimiter.limit(beerRepository.findAllById(ids)), Beer::getId,
+                    maxBatchSize, batchWindow, batchConcurrency, meterRegistry);
+            this.byId = new RequestCoalescer<>("id", idBatches::load, meterRegistry);
+        }
+        this.byUpc = new RequestCoalescer<>("upc", upc -> beerQueryLimiter.limit(beerRepository.findByUpc(upc)), meterRegistry);
+    }
+
+    public Mono<Beer> findById(Integer beerId) {
+        return byId.get(beerId);
+    }
+
+    public Mono<Beer> findByUpc(String upc) {
+        return byUpc.get(upc);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (idBatches != null) {
+            idBatches.dispose();
+        }
+    }
+}
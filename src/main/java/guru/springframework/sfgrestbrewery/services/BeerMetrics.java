@@ -0,0 +1,120 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Stage timers for BeerServiceImpl, so a slow request can be pinned on the database, the mapping or the
+ * cache. Every timer is tagged with the service method and publishes a percentile histogram:
+ *
+ * beer.service - the whole call, tagged cache=hit, miss or bypass
+ * beer.db - from subscribing to a query until its last row
+ * beer.mapping - MapStruct entity to dto mapping, per beer
+ *
+ * JSON encoding is timed separately by TimedJsonEncoder as beer.json.encode.
+ *
+ * Timers are looked up once per method and outcome and then reused, building and registering one costs an
+ * id, its tags and a registry lookup, too much for every call.
+ */
+@Component
+@RequiredArgsConstructor
+public class BeerMetrics {
+
+    public static final String SERVICE_TIMER = "beer.service";
+    public static final String DB_TIMER = "beer.db";
+    public static final String MAPPING_TIMER = "beer.mapping";
+
+    private final MeterRegistry meterRegistry;
+
+    // method -> cache outcome -> timer
+    private final Map<String, Map<String, Timer>> serviceTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> dbTimers = new ConcurrentHashMap<>();
+
+    /**
+     * Times a call that goes through one of the BeerCache maps. The loader handed to the cache marks the
+     * call as a miss when the cache has to run it.
+     */
+    public <T> Mono<T> cached(String method, Function<Supplier<Mono<T>>, Mono<T>> cache, Supplier<Mono<T>> loader) {
+        return Mono.defer(() -> {
+            AtomicBoolean loaded = new AtomicBoolean();
+            Timer.Sample sample = Timer.start();
+            return cache.apply(() -> {
+                loaded.set(true);
+                return loader.get();
+            }).doFinally(signal -> sample.stop(serviceTimer(method, loaded.get() ? "miss" : "hit")));
+        });
+    }
+
+    /**
+     * Times a call that doesn't use the cache.
+     */
+    public <T> Mono<T> uncached(String method, Mono<T> call) {
+        Timer timer = serviceTimer(method, "bypass");
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return call.doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    public <T> Flux<T> uncached(String method, Flux<T> call) {
+        Timer timer = serviceTimer(method, "bypass");
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return call.doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    public <T> Mono<T> db(String method, Mono<T> query) {
+        Timer timer = dbTimer(method);
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return query.doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    public <T> Flux<T> db(String method, Flux<T> query) {
+        Timer timer = dbTimer(method);
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return query.doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    public <S, T> Function<S, T> mapping(String method, Function<S, T> mapper) {
+        Timer timer = timer(MAPPING_TIMER, method);
+        return source -> timer.record(() -> mapper.apply(source));
+    }
+
+    // a plain get first, computeIfAbsent would allocate its capturing lambda on every call
+    private Timer serviceTimer(String method, String cache) {
+        Map<String, Timer> byCache = serviceTimers.get(method);
+        if (byCache == null) {
+            byCache = serviceTimers.computeIfAbsent(method, key -> new ConcurrentHashMap<>());
+        }
+        Timer timer = byCache.get(cache);
+        return timer != null ? timer : byCache.computeIfAbsent(cache, key -> timer(SERVICE_TIMER, method, "cache", key));
+    }
+
+    private Timer dbTimer(String method) {
+        Timer timer = dbTimers.get(method);
+        return timer != null ? timer : dbTimers.computeIfAbsent(method, key -> timer(DB_TIMER, key));
+    }
+
+    private Timer timer(String name, String method, String... tags) {
+        return Timer.builder(name)
+                .tag("method", method)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
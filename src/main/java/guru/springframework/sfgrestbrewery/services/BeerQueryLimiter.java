@@ -0,0 +1,341 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.config.ConnectionPoolExhaustedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive limit on the queries in flight, in the style of TCP Vegas. The round trip measured while only a
+ * few queries are let through stands for the database without load. When round trips grow past it by more
+ * than a few queries' worth, queries are queueing somewhere, in the pool, the driver or the database, and the
+ * limit comes down in proportion to how much longer they got. When they don't, and the limit is actually
+ * being used, it goes up. A query that couldn't get a connection counts as a drop and also brings it down.
+ *
+ * Round trips are averaged over windows of about one limit's worth of queries and the limit moves once per
+ * window. Every so many windows, starting with the third, a probe window lets only a few queries through to
+ * measure the no-load round trip again. A probe ends after a window of samples or after PROBE_MAX_TIME,
+ * whichever comes first, so it can't hold the limit down when queries stop finishing.
+ *
+ * A round trip is taken to the first row, and a stream gives its slot back there too. The rest of a stream
+ * goes at its consumer's pace, and a stalled consumer must not hold a slot that point queries need. The
+ * connection pool still bounds how many streams run at once. Queries over the limit wait up to max-wait in
+ * a queue of max-queue and then fail with a QueryLimitExceededException. The limit, the queries in flight
+ * and the rejections are published as beer.db.limit, beer.db.in-flight and beer.db.rejected.
+ */
+@Slf4j
+@Component
+public class BeerQueryLimiter {
+
+    public static final String LIMIT_GAUGE = "beer.db.limit";
+    public static final String IN_FLIGHT_GAUGE = "beer.db.in-flight";
+    public static final String REJECTED_COUNTER = "beer.db.rejected";
+
+    // a single round trip is too noisy to move the limit on, so they are averaged over at least this many
+    private static final int MIN_WINDOW = 10;
+
+    // every so many windows the limit drops to a few queries for one window, to measure the no-load round trip
+    // again as the data and the query mix change
+    private static final int PROBE_WINDOWS = 30;
+    private static final int PROBE_LIMIT = 3;
+    private static final long PROBE_MAX_TIME = TimeUnit.SECONDS.toNanos(1);
+    // the first probe comes once two windows have given the limit a starting point
+    private static final int FIRST_PROBE_AFTER = 2;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final Duration maxWait;
+    private final LongSupplier nanoTime;
+    private final Counter rejected;
+
+    private final Deque<Sinks.One<Permit>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    // zero until the first window
+    private long rttNoLoad;
+    // the limit to go back to once the probe window is over, zero when not probing
+    private double probedLimit;
+    private long probeStartedAt;
+    private int windowsSinceProbe = PROBE_WINDOWS - FIRST_PROBE_AFTER;
+    private int windowSamples;
+    private long windowRttSum;
+    private boolean windowDropped;
+
+    @Autowired
+    public BeerQueryLimiter(MeterRegistry meterRegistry,
+                            @Value("${sfg.brewery.db-limit.enabled:true}") boolean enabled,
+                            @Value("${sfg.brewery.db-limit.initial-limit:10}") int initialLimit,
+                            @Value("${sfg.brewery.db-limit.min-limit:1}") int minLimit,
+                            @Value("${sfg.brewery.db-limit.max-limit:100}") int maxLimit,
+                            @Value("${sfg.brewery.db-limit.max-queue:1000}") int maxQueue,
+                            @Value("${sfg.brewery.db-limit.max-wait:2s}") Duration maxWait) {
+        this(meterRegistry, enabled, initialLimit, minLimit, maxLimit, maxQueue, maxWait, System::nanoTime);
+    }
+
+    BeerQueryLimiter(MeterRegistry meterRegistry, boolean enabled, int initialLimit, int minLimit, int maxLimit,
+                     int maxQueue, Duration maxWait, LongSupplier nanoTime) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxWait = maxWait;
+        this.nanoTime = nanoTime;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+        this.rejected = Counter.builder(REJECTED_COUNTER)
+                .description("Queries refused because the adaptive limit was reached")
+                .register(meterRegistry);
+        Gauge.builder(LIMIT_GAUGE, this, BeerQueryLimiter::getLimit)
+                .description("Queries allowed in flight")
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT_GAUGE, this, BeerQueryLimiter::getInFlight)
+                .description("Queries in flight")
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> limit(Mono<T> query) {
+        if (!enabled) {
+            return query;
+        }
+        // released on the value, so a query chained onto this one can have the slot
+        return acquire().flatMap(permit -> query
+                .doOnEach(permit::firstSignal)
+                .doFinally(signal -> permit.release()));
+    }
+
+    public <T> Flux<T> limit(Flux<T> query) {
+        if (!enabled) {
+            return query;
+        }
+        // released on the first row, the rest of the stream runs outside the limit
+        return acquire().flatMapMany(permit -> query
+                .doOnEach(permit::firstSignal)
+                .doFinally(signal -> permit.release()));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.defer(() -> {
+            endExpiredProbe();
+            Sinks.One<Permit> waiter = null;
+            synchronized (this) {
+                if (inFlight < (int) limit) {
+                    inFlight++;
+                    return Mono.just(new Permit());
+                }
+                if (waiters.size() < maxQueue) {
+                    waiter = Sinks.one();
+                    waiters.add(waiter);
+                }
+            }
+            if (waiter == null) {
+                return reject();
+            }
+            Sinks.One<Permit> queued = waiter;
+            return queued.asMono()
+                    .timeout(maxWait, Mono.defer(() -> timedOut(queued)))
+                    .doOnCancel(() -> abandon(queued));
+        });
+    }
+
+    private Mono<Permit> timedOut(Sinks.One<Permit> waiter) {
+        synchronized (this) {
+            if (!waiters.remove(waiter)) {
+                // handed a slot just as the wait ran out
+                return waiter.asMono();
+            }
+        }
+        return reject();
+    }
+
+    private void abandon(Sinks.One<Permit> waiter) {
+        synchronized (this) {
+            if (waiters.remove(waiter)) {
+                return;
+            }
+        }
+        // the slot was handed over but nobody will use it
+        waiter.asMono().subscribe(Permit::release);
+    }
+
+    private Mono<Permit> reject() {
+        rejected.increment();
+        return Mono.error(new QueryLimitExceededException("Query limit of " + getLimit() + " reached"));
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        admitWaiters();
+    }
+
+    private void admitWaiters() {
+        List<Sinks.One<Permit>> admitted = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                inFlight++;
+                admitted.add(waiters.poll());
+            }
+        }
+        // outside the lock, the waiter goes on to run its query on this thread
+        admitted.forEach(waiter -> waiter.tryEmitValue(new Permit()));
+    }
+
+    /**
+     * Ends a probe that ran out of time before it had a window of samples, because the few queries it lets
+     * through are slow or never finish. Whatever it did measure still counts.
+     */
+    private void endExpiredProbe() {
+        synchronized (this) {
+            if (probedLimit == 0 || nanoTime.getAsLong() - probeStartedAt < PROBE_MAX_TIME) {
+                return;
+            }
+            if (windowSamples > 0) {
+                rttNoLoad = windowRttSum / windowSamples;
+            }
+            log.debug("Probe window ran out of time after {} samples", windowSamples);
+            limit = probedLimit;
+            probedLimit = 0;
+            resetWindow();
+        }
+        admitWaiters();
+    }
+
+    private void onSample(long rtt, boolean dropped) {
+        synchronized (this) {
+            if (!update(rtt, dropped)) {
+                return;
+            }
+        }
+        admitWaiters();
+    }
+
+    // true when the limit changed
+    private boolean update(long sampleRtt, boolean sampleDropped) {
+        // a probe only measures queries that were let in under it
+        if (probedLimit > 0 && inFlight > (int) limit) {
+            return false;
+        }
+        windowSamples++;
+        windowRttSum += sampleRtt;
+        windowDropped |= sampleDropped;
+        if (windowSamples < Math.max(MIN_WINDOW, probedLimit > 0 ? 0 : (int) limit)) {
+            return false;
+        }
+        long rtt = windowRttSum / windowSamples;
+        boolean dropped = windowDropped;
+        resetWindow();
+
+        double step = Math.max(1, (int) Math.log10(limit));
+        double newLimit = limit;
+
+        if (probedLimit > 0) {
+            rttNoLoad = rtt;
+            newLimit = probedLimit;
+            probedLimit = 0;
+        } else if (dropped) {
+            newLimit = limit - step;
+        } else {
+            rttNoLoad = rttNoLoad == 0 ? rtt : Math.min(rttNoLoad, rtt);
+            // a limit well above what is used says nothing about how much more the database can take
+            if (inFlight * 2 >= limit) {
+                // how many of the queries in flight are waiting rather than being worked on
+                double queued = Math.ceil(limit * (1 - (double) rttNoLoad / rtt));
+                if (queued <= step) {
+                    newLimit = limit + 6 * step;
+                } else if (queued < 3 * step) {
+                    newLimit = limit + step;
+                } else if (queued > 6 * step) {
+                    // the gradient takes a far too high limit down in a few windows, by at most half each time,
+                    // and leaves room for the few queued queries that are tolerated
+                    double gradient = Math.max(0.5, (double) rttNoLoad / rtt);
+                    newLimit = Math.min(limit - step, limit * gradient + 3 * step);
+                }
+            }
+        }
+
+        newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        // every window counts towards the next probe, also the ones that leave the limit where it is
+        if (++windowsSinceProbe >= PROBE_WINDOWS) {
+            windowsSinceProbe = 0;
+            probedLimit = newLimit;
+            probeStartedAt = nanoTime.getAsLong();
+            newLimit = Math.max(minLimit, Math.min(PROBE_LIMIT, newLimit));
+            Schedulers.parallel().schedule(this::endExpiredProbe, PROBE_MAX_TIME, TimeUnit.NANOSECONDS);
+        }
+        if ((int) newLimit == (int) limit) {
+            limit = newLimit;
+            return false;
+        }
+        log.debug("Query limit {} -> {}, round trip {}us, no-load {}us", (int) limit, (int) newLimit,
+                rtt / 1000, rttNoLoad / 1000);
+        limit = newLimit;
+        return true;
+    }
+
+    private void resetWindow() {
+        windowSamples = 0;
+        windowRttSum = 0;
+        windowDropped = false;
+    }
+
+    private static boolean isDrop(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectionPoolExhaustedException || cause instanceof R2dbcTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class Permit {
+
+        private final long startedAt = nanoTime.getAsLong();
+        private final AtomicBoolean sampled = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        // the first signal ends the round trip and frees the slot, other errors than drops say nothing about load
+        void firstSignal(Signal<?> signal) {
+            if (sampled.compareAndSet(false, true)
+                    && !(signal.isOnError() && !isDrop(signal.getThrowable()))) {
+                onSample(nanoTime.getAsLong() - startedAt, signal.isOnError());
+            }
+            release();
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                BeerQueryLimiter.this.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Optional in memory read model of the whole beer catalog, so reads are answered without going to the
+ * database. The catalog is an immutable snapshot of sorted arrays, one per sort key, one for upcs and one per
+ * style, searched by bisection. Readers take whatever snapshot is current. BeerServiceImpl hands every beer
+ * it writes to put or remove before the write returns, and each of those publishes a new snapshot with the
+ * beer bisected into copies of the arrays it is in. A write costs a copy of those arrays rather than a sort
+ * of the catalog, but it is still meant for catalogs that are read far more often than they are written.
+ *
+ * Writes can be handed over in another order than they reached the database, so a beer only replaces one
+ * with a lower version, and the id of a deleted beer is remembered so a late write can't bring it back.
+ *
+ * Loaded from the repository once the application is ready; until then reads go to the database. Writes
+ * arriving while it loads are kept and applied over the loaded rows. check compares it to the table.
+ */
+@Slf4j
+@Component
+public class BeerReadModel {
+
+    // so a check against a badly diverged catalog doesn't answer with the whole table
+    private static final int MAX_REPORTED_IDS = 100;
+    private static final Comparator<Beer> BY_UPC = Comparator.comparing(Beer::getUpc).thenComparing(Beer::getId);
+
+    private final BeerRepository beerRepository;
+    private final boolean enabled;
+
+    private volatile Catalog catalog = Catalog.of(List.of());
+    private volatile boolean serving;
+
+    // ids are never reused, so these stay deleted
+    private final Set<Integer> deleted = new HashSet<>();
+    // writes seen while loading, by beer id, an empty value for a delete
+    private Map<Integer, Optional<Beer>> writesWhileLoading;
+
+    public BeerReadModel(BeerRepository beerRepository, MeterRegistry meterRegistry,
+                         @Value("${sfg.brewery.read-model.enabled:false}") boolean enabled) {
+        this.beerRepository = beerRepository;
+        this.enabled = enabled;
+
+        Gauge.builder("beer.read-model.size", this, readModel -> readModel.catalog.byId.length)
+                .description("Beers in the in memory read model")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        synchronized (this) {
+            writesWhileLoading = new LinkedHashMap<>();
+        }
+
+        // not under the lock, writers must not wait on a scan of the table
+        Map<Integer, Beer> beers = new HashMap<>();
+        beerRepository.findAll().doOnNext(beer -> beers.put(beer.getId(), beer)).blockLast();
+
+        synchronized (this) {
+            beers.keySet().removeAll(deleted);
+            writesWhileLoading.forEach((id, beer) -> {
+                if (beer.isEmpty()) {
+                    beers.remove(id);
+                } else if (!isOlder(beer.get(), beers.get(id))) {
+                    beers.put(id, beer.get());
+                }
+            });
+            writesWhileLoading = null;
+            catalog = Catalog.of(beers.values());
+            serving = true;
+        }
+        log.info("Loaded {} beers into the read model in {} ms", beers.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * True once loaded, reads may then be answered from here alone.
+     */
+    public boolean isServing() {
+        return serving;
+    }
+
+    public Beer findById(Integer beerId) {
+        return catalog.findById(beerId);
+    }
+
+    public Beer findByUpc(String upc) {
+        return catalog.findByUpc(upc);
+    }
+
+    public List<Beer> findAllById(Collection<Integer> beerIds) {
+        Catalog current = catalog;
+        return beerIds.stream().map(current::findById).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    public List<Beer> findAllByUpc(Collection<String> upcs) {
+        Catalog current = catalog;
+        return upcs.stream().map(current::findByUpc).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * The beers with exactly this name and style, either of them null for any, in ascending (sort key, id)
+     * order with null values first the way the database sorts them.
+     */
+    public List<Beer> list(String beerName, BeerStyleEnum beerStyle, String sortKey) {
+        Catalog current = catalog;
+        boolean byName = beerName != null && !beerName.isEmpty();
+
+        if (!byName && beerStyle == null) {
+            return listOf(current.sorted(sortKey));
+        }
+        List<Beer> beers = byName
+                ? current.named(beerName)
+                : listOf(current.byStyle.getOrDefault(beerStyle, new Beer[0]));
+        if (byName && beerStyle != null) {
+            beers = beers.stream().filter(beer -> beerStyle == beer.getBeerStyle()).collect(Collectors.toList());
+        }
+        // beers of one name and beers of one style are both in id order
+        if (BeerCursor.DEFAULT_SORT_KEY.equals(sortKey)) {
+            return beers;
+        }
+        List<Beer> sorted = new ArrayList<>(beers);
+        sorted.sort(order(sortKey));
+        return sorted;
+    }
+
+    /**
+     * Index of the first beer in a listing strictly after the cursor's last row, the in memory counterpart
+     * of BeerCursor.seekCriteria.
+     */
+    public static int indexAfter(List<Beer> listing, BeerCursor cursor) {
+        Comparator<Beer> order = order(cursor.getSortKey());
+        Beer last = new Beer();
+        last.setId(cursor.getLastId());
+        if ("beerName".equals(cursor.getSortKey())) {
+            last.setBeerName(cursor.getLastValue());
+        } else if ("price".equals(cursor.getSortKey()) && cursor.getLastValue() != null) {
+            last.setPrice(new BigDecimal(cursor.getLastValue()));
+        }
+
+        int low = 0;
+        int high = listing.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(listing.get(mid), last) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public void put(Beer beer) {
+        if (enabled) {
+            apply(Map.of(beer.getId(), Optional.of(copy(beer))));
+        }
+    }
+
+    public void putAll(Collection<Beer> beers) {
+        if (enabled && !beers.isEmpty()) {
+            apply(beers.stream().collect(Collectors.toMap(Beer::getId, beer -> Optional.of(copy(beer)), (a, b) -> b)));
+        }
+    }
+
+    public void remove(Integer beerId) {
+        if (enabled) {
+            apply(Map.of(beerId, Optional.empty()));
+        }
+    }
+
+    private synchronized void apply(Map<Integer, Optional<Beer>> writes) {
+        Catalog current = catalog;
+        // by id, null for a delete
+        Map<Integer, Beer> changes = new HashMap<>();
+        writes.forEach((id, beer) -> {
+            if (beer.isEmpty()) {
+                deleted.add(id);
+                changes.put(id, null);
+            } else if (!deleted.contains(id) && !isOlder(beer.get(), current.findById(id))) {
+                changes.put(id, beer.get());
+            }
+        });
+        if (writesWhileLoading != null) {
+            changes.forEach((id, beer) -> writesWhileLoading.put(id, Optional.ofNullable(beer)));
+        }
+
+        // every beer bisected in copies the arrays, past about log2 of the catalog size one sort is cheaper
+        if (changes.size() > 32 - Integer.numberOfLeadingZeros(current.byId.length)) {
+            Map<Integer, Beer> beers = new HashMap<>();
+            for (Beer beer : current.byId) {
+                beers.put(beer.getId(), beer);
+            }
+            changes.forEach((id, beer) -> {
+                if (beer == null) {
+                    beers.remove(id);
+                } else {
+                    beers.put(id, beer);
+                }
+            });
+            catalog = Catalog.of(beers.values());
+            return;
+        }
+        Catalog next = current;
+        for (Map.Entry<Integer, Beer> change : changes.entrySet()) {
+            next = next.with(next.findById(change.getKey()), change.getValue());
+        }
+        catalog = next;
+    }
+
+    // a beer without a version is one that was never read back, anything read from the table is newer
+    private static boolean isOlder(Beer beer, Beer than) {
+        return than != null && versionOf(beer) < versionOf(than);
+    }
+
+    private static long versionOf(Beer beer) {
+        return beer.getVersion() == null ? -1 : beer.getVersion();
+    }
+
+    /**
+     * Compares the current snapshot to the beer table. Writes made while the table is read can show up as
+     * differences, a check that keeps failing is the one to worry about.
+     */
+    public Mono<Consistency> check() {
+        return Mono.defer(() -> {
+            if (!serving) {
+                return Mono.just(Consistency.builder().serving(false).build());
+            }
+            Catalog snapshot = catalog;
+            return beerRepository.findAll().collectList().map(rows -> compare(snapshot, rows));
+        });
+    }
+
+    private static Consistency compare(Catalog snapshot, List<Beer> rows) {
+        List<Integer> missingFromModel = new ArrayList<>();
+        List<Integer> different = new ArrayList<>();
+        for (Beer row : rows) {
+            Beer modelled = snapshot.findById(row.getId());
+            if (modelled == null) {
+                missingFromModel.add(row.getId());
+            } else if (!sameContent(modelled, row)) {
+                different.add(row.getId());
+            }
+        }
+        Map<Integer, Beer> tableIds = rows.stream().collect(Collectors.toMap(Beer::getId, Function.identity()));
+        List<Integer> missingFromTable = Arrays.stream(snapshot.byId)
+                .map(Beer::getId)
+                .filter(id -> !tableIds.containsKey(id))
+                .collect(Collectors.toList());
+
+        return Consistency.builder()
+                .serving(true)
+                .consistent(missingFromModel.isEmpty() && missingFromTable.isEmpty() && different.isEmpty())
+                .modelSize(snapshot.byId.length)
+                .tableSize(rows.size())
+                .missingFromModel(firstIds(missingFromModel))
+                .missingFromTable(firstIds(missingFromTable))
+                .different(firstIds(different))
+                .build();
+    }
+
+    // everything a response can show, timestamps to the milli as the column may store less than java has
+    private static boolean sameContent(Beer modelled, Beer row) {
+        return Objects.equals(modelled.getVersion(), row.getVersion())
+                && Objects.equals(modelled.getBeerName(), row.getBeerName())
+                && modelled.getBeerStyle() == row.getBeerStyle()
+                && Objects.equals(modelled.getUpc(), row.getUpc())
+                && Objects.equals(modelled.getQuantityOnHand(), row.getQuantityOnHand())
+                && (modelled.getPrice() == null ? row.getPrice() == null
+                : row.getPrice() != null && modelled.getPrice().compareTo(row.getPrice()) == 0)
+                && Objects.equals(millis(modelled.getCreatedDate()), millis(row.getCreatedDate()))
+                && Objects.equals(millis(modelled.getLastModifiedDate()), millis(row.getLastModifiedDate()));
+    }
+
+    private static LocalDateTime millis(LocalDateTime dateTime) {
+        return dateTime == null ? null : dateTime.truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private static List<Integer> firstIds(List<Integer> ids) {
+        Collections.sort(ids);
+        return List.copyOf(ids.subList(0, Math.min(ids.size(), MAX_REPORTED_IDS)));
+    }
+
+    private static Comparator<Beer> order(String sortKey) {
+        Comparator<Beer> byId = Comparator.comparing(Beer::getId);
+        switch (sortKey) {
+            case "beerName":
+                return Comparator.comparing(Beer::getBeerName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                        .thenComparing(byId);
+            case "price":
+                return Comparator.comparing(Beer::getPrice, Comparator.nullsFirst(Comparator.<BigDecimal>naturalOrder()))
+                        .thenComparing(byId);
+            default:
+                return byId;
+        }
+    }
+
+    private static List<Beer> listOf(Beer[] beers) {
+        return Collections.unmodifiableList(Arrays.asList(beers));
+    }
+
+    // the caller keeps its beer, the catalog must never see it change
+    private static Beer copy(Beer beer) {
+        return Beer.builder()
+                .id(beer.getId())
+                .version(beer.getVersion())
+                .beerName(beer.getBeerName())
+                .beerStyle(beer.getBeerStyle())
+                .upc(beer.getUpc())
+                .quantityOnHand(beer.getQuantityOnHand())
+                .price(beer.getPrice())
+                .createdDate(beer.getCreatedDate())
+                .lastModifiedDate(beer.getLastModifiedDate())
+                .build();
+    }
+
+    @lombok.Value
+    @Builder
+    public static class Consistency {
+        boolean serving;
+        boolean consistent;
+        int modelSize;
+        int tableSize;
+        List<Integer> missingFromModel;
+        List<Integer> missingFromTable;
+        List<Integer> different;
+    }
+
+    /**
+     * One immutable snapshot of the catalog, every array in it is sorted and never written to once published.
+     */
+    private static final class Catalog {
+
+        private final Beer[] byId;
+        // beers without a upc are left out
+        private final Beer[] byUpc;
+        private final Beer[] byName;
+        private final Beer[] byPrice;
+        // in id order
+        private final Map<BeerStyleEnum, Beer[]> byStyle;
+
+        private Catalog(Beer[] byId, Beer[] byUpc, Beer[] byName, Beer[] byPrice, Map<BeerStyleEnum, Beer[]> byStyle) {
+            this.byId = byId;
+            this.byUpc = byUpc;
+            this.byName = byName;
+            this.byPrice = byPrice;
+            this.byStyle = byStyle;
+        }
+
+        static Catalog of(Collection<Beer> beers) {
+            Map<BeerStyleEnum, Beer[]> byStyle = new EnumMap<>(BeerStyleEnum.class);
+            beers.stream()
+                    .filter(beer -> beer.getBeerStyle() != null)
+                    .collect(Collectors.groupingBy(Beer::getBeerStyle))
+                    .forEach((style, ofStyle) -> byStyle.put(style, sorted(ofStyle, order(BeerCursor.DEFAULT_SORT_KEY))));
+
+            return new Catalog(sorted(beers, order(BeerCursor.DEFAULT_SORT_KEY)),
+                    sorted(beers.stream().filter(beer -> beer.getUpc() != null).collect(Collectors.toList()), BY_UPC),
+                    sorted(beers, order("beerName")), sorted(beers, order("price")), byStyle);
+        }
+
+        /**
+         * This catalog with previous replaced by beer, either of them null for an insert or a delete.
+         */
+        Catalog with(Beer previous, Beer beer) {
+            Map<BeerStyleEnum, Beer[]> styles = byStyle;
+            BeerStyleEnum previousStyle = previous == null ? null : previous.getBeerStyle();
+            BeerStyleEnum style = beer == null ? null : beer.getBeerStyle();
+            if (previousStyle != null || style != null) {
+                styles = new EnumMap<>(BeerStyleEnum.class);
+                styles.putAll(byStyle);
+                if (previousStyle != null && previousStyle != style) {
+                    styles.put(previousStyle, replace(styles.get(previousStyle), previous, null, order(BeerCursor.DEFAULT_SORT_KEY)));
+                }
+                if (style != null) {
+                    Beer[] ofStyle = styles.getOrDefault(style, new Beer[0]);
+                    styles.put(style, replace(ofStyle, previousStyle == style ? previous : null, beer, order(BeerCursor.DEFAULT_SORT_KEY)));
+                }
+            }
+            return new Catalog(replace(byId, previous, beer, order(BeerCursor.DEFAULT_SORT_KEY)),
+                    replace(byUpc, withUpc(previous), withUpc(beer), BY_UPC),
+                    replace(byName, previous, beer, order("beerName")),
+                    replace(byPrice, previous, beer, order("price")),
+                    styles);
+        }
+
+        Beer findById(Integer beerId) {
+            Beer probe = new Beer();
+            probe.setId(beerId);
+            int at = Arrays.binarySearch(byId, probe, order(BeerCursor.DEFAULT_SORT_KEY));
+            return at < 0 ? null : byId[at];
+        }
+
+        Beer findByUpc(String upc) {
+            if (upc == null) {
+                return null;
+            }
+            int at = firstAtOrAfter(byUpc, probe(null, upc, Integer.MIN_VALUE), BY_UPC);
+            return at < byUpc.length && upc.equals(byUpc[at].getUpc()) ? byUpc[at] : null;
+        }
+
+        // in id order, as that breaks ties between equal names
+        List<Beer> named(String beerName) {
+            Comparator<Beer> order = order("beerName");
+            int from = firstAtOrAfter(byName, probe(beerName, null, Integer.MIN_VALUE), order);
+            int to = firstAtOrAfter(byName, probe(beerName, null, Integer.MAX_VALUE), order);
+            return listOf(byName).subList(from, to);
+        }
+
+        Beer[] sorted(String sortKey) {
+            switch (sortKey) {
+                case "beerName":
+                    return byName;
+                case "price":
+                    return byPrice;
+                default:
+                    return byId;
+            }
+        }
+
+        private static Beer[] sorted(Collection<Beer> beers, Comparator<Beer> order) {
+            Beer[] sorted = beers.toArray(new Beer[0]);
+            Arrays.sort(sorted, order);
+            return sorted;
+        }
+
+        private static Beer[] replace(Beer[] beers, Beer previous, Beer beer, Comparator<Beer> order) {
+            Beer[] replaced = beers;
+            if (previous != null && (beer == null || order.compare(previous, beer) != 0)) {
+                int at = Arrays.binarySearch(replaced, previous, order);
+                if (at >= 0) {
+                    Beer[] shorter = new Beer[replaced.length - 1];
+                    System.arraycopy(replaced, 0, shorter, 0, at);
+                    System.arraycopy(replaced, at + 1, shorter, at, shorter.length - at);
+                    replaced = shorter;
+                }
+            }
+            if (beer != null) {
+                int at = Arrays.binarySearch(replaced, beer, order);
+                if (at >= 0) {
+                    replaced = replaced == beers ? beers.clone() : replaced;
+                    replaced[at] = beer;
+                } else {
+                    int insertAt = -at - 1;
+                    Beer[] longer = new Beer[replaced.length + 1];
+                    System.arraycopy(replaced, 0, longer, 0, insertAt);
+                    longer[insertAt] = beer;
+                    System.arraycopy(replaced, insertAt, longer, insertAt + 1, replaced.length - insertAt);
+                    replaced = longer;
+                }
+            }
+            return replaced;
+        }
+
+        private static Beer withUpc(Beer beer) {
+            return beer == null || beer.getUpc() == null ? null : beer;
+        }
+
+        private static int firstAtOrAfter(Beer[] beers, Beer probe, Comparator<Beer> order) {
+            int low = 0;
+            int high = beers.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (order.compare(beers[mid], probe) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static Beer probe(String beerName, String upc, int id) {
+            Beer probe = new Beer();
+            probe.setBeerName(beerName);
+            probe.setUpc(upc);
+            probe.setId(id);
+            return probe;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * /actuator/beerReadModel compares the read model to the beer table, see BeerReadModel.check.
+ */
+@Component
+@Endpoint(id = "beerReadModel")
+@RequiredArgsConstructor
+public class BeerReadModelEndpoint {
+
+    private final BeerReadModel beerReadModel;
+
+    @ReadOperation
+    public Mono<BeerReadModel.Consistency> check() {
+        return beerReadModel.check();
+    }
+}
@@ -0,0 +1,125 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.web.mappers.BeerMapper;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In memory prefix index over beer names and upcs for type-ahead search. Every term is kept in a sorted
+ * map, so the beers matching a prefix are one contiguous range found with a single seek. Names are
+ * indexed from the start of each word, so "cat" finds "Galaxy Cat".
+ *
+ * Built from the repository once the application is ready and kept current by BeerServiceImpl on every
+ * save, update and delete.
+ */
+@Slf4j
+@Component
+public class BeerSearchIndex {
+
+    // sorts below every character a term can contain, so "ale" + SEPARATOR + id comes before "alex"
+    private static final char SEPARATOR = '\u0000';
+
+    private final BeerRepository beerRepository;
+    private final BeerMapper beerMapper;
+
+    // term + SEPARATOR + beer id -> beer, the id keeps beers sharing a term apart
+    private final ConcurrentNavigableMap<String, BeerDto> terms = new ConcurrentSkipListMap<>();
+    private final Map<Integer, BeerDto> beers = new ConcurrentHashMap<>();
+
+    public BeerSearchIndex(BeerRepository beerRepository, BeerMapper beerMapper, MeterRegistry meterRegistry) {
+        this.beerRepository = beerRepository;
+        this.beerMapper = beerMapper;
+
+        Gauge.builder("beer.search.index.size", beers, Map::size)
+                .description("Beers in the prefix search index")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.nanoTime();
+        beerRepository.findAll().doOnNext(this::put).blockLast();
+        log.info("Indexed {} beers for search in {} ms", beers.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void put(Beer beer) {
+        BeerDto beerDto = beerMapper.beerToBeerDto(beer);
+
+        // compute serializes writers of the same beer, so its old terms are always the ones removed
+        beers.compute(beer.getId(), (id, previous) -> {
+            if (previous != null) {
+                termsOf(previous).forEach(term -> terms.remove(key(term, id)));
+            }
+            termsOf(beerDto).forEach(term -> terms.put(key(term, id), beerDto));
+            return beerDto;
+        });
+    }
+
+    public void remove(Integer beerId) {
+        beers.computeIfPresent(beerId, (id, previous) -> {
+            termsOf(previous).forEach(term -> terms.remove(key(term, id)));
+            return null;
+        });
+    }
+
+    /**
+     * At most {@code limit} beers with a name word or upc starting with the prefix, ignoring case, in
+     * order of the matching term.
+     */
+    public List<BeerDto> search(String prefix, int limit) {
+        String from = normalize(prefix);
+        if (from.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Map<Integer, BeerDto> matches = new LinkedHashMap<>();
+        for (BeerDto beerDto : terms.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            matches.putIfAbsent(beerDto.getId(), beerDto);
+            if (matches.size() == limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(matches.values());
+    }
+
+    private static Set<String> termsOf(BeerDto beerDto) {
+        Set<String> terms = new TreeSet<>();
+        if (beerDto.getUpc() != null) {
+            terms.add(normalize(beerDto.getUpc()));
+        }
+        String name = normalize(beerDto.getBeerName());
+        for (int i = 0; i < name.length(); i++) {
+            if (i == 0 || (name.charAt(i - 1) == ' ' && name.charAt(i) != ' ')) {
+                terms.add(name.substring(i));
+            }
+        }
+        terms.remove("");
+        return terms;
+    }
+
+    private static String key(String term, Integer beerId) {
+        return term + SEPARATOR + beerId;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
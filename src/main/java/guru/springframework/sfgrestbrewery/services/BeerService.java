@@ -1,12 +1,16 @@
 package guru.springframework.sfgrestbrewery.services;
 
+import guru.springframework.sfgrestbrewery.web.model.BeerBatchGetResult;
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerJson;
 import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
 import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -15,17 +19,49 @@ import java.util.UUID;
 public interface BeerService {
     Mono<BeerPagedList> listBeers(String beerName, BeerStyleEnum beerStyle, PageRequest pageRequest, Boolean showInventoryOnHand);
 
+    Mono<BeerPagedList> listBeersFromCursor(String beerName, BeerStyleEnum beerStyle, String cursor, Integer pageSize, Boolean showInventoryOnHand);
+
+    Flux<BeerDto> streamBeers(String beerName, BeerStyleEnum beerStyle, Boolean showInventoryOnHand);
+
+    Flux<BeerDto> searchBeers(String prefix, int limit);
+
     Mono<BeerDto> getById(Integer beerId, Boolean showInventoryOnHand);
 
     Mono<BeerDto> saveNewBeer(BeerDto beerDto);
 
     Mono<BeerDto> saveNewBeerMono (Mono<BeerDto> beerDto);
 
+    Flux<BeerDto> saveNewBeers(List<BeerDto> beerDtos);
+
     Mono<BeerDto> updateBeer(Integer beerId, BeerDto beerDto);
 
+    /**
+     * updateBeer that only applies while the beer is still at expectedVersion, otherwise errors with
+     * PreconditionFailedException. A null expectedVersion applies whatever the version.
+     */
+    Mono<BeerDto> updateBeer(Integer beerId, BeerDto beerDto, Long expectedVersion);
+
+    /**
+     * Adds delta to the quantity on hand in one atomic statement. Errors with NotFoundException for an unknown
+     * beer and InsufficientInventoryException if the stock would go negative.
+     */
+    Mono<BeerDto> adjustInventory(Integer beerId, int delta);
+
     Mono<BeerDto> getByUpc(String upc);
 
-    void    deleteBeerById(Integer beerId);
+    /**
+     * getById without inventory, already encoded as JSON. Hot beers are served from a cache of the bytes.
+     */
+    Mono<BeerJson> getByIdAsJson(Integer beerId);
+
+    /**
+     * getByUpc, already encoded as JSON. Hot beers are served from a cache of the bytes.
+     */
+    Mono<BeerJson> getByUpcAsJson(String upc);
+
+    Flux<BeerBatchGetResult> getByIds(List<Integer> beerIds, Boolean showInventoryOnHand);
+
+    Flux<BeerBatchGetResult> getByUpcs(List<String> upcs, Boolean showInventoryOnHand);
 
     Mono<Void> deleteReactiveBeer(Integer beerId);
 }
@@ -1,23 +1,40 @@
 package guru.springframework.sfgrestbrewery.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import guru.springframework.sfgrestbrewery.domain.Beer;
 import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.services.BeerCache.BeerListKey;
+import guru.springframework.sfgrestbrewery.web.controller.InsufficientInventoryException;
 import guru.springframework.sfgrestbrewery.web.controller.NotFoundException;
+import guru.springframework.sfgrestbrewery.web.controller.PreconditionFailedException;
 import guru.springframework.sfgrestbrewery.web.mappers.BeerMapper;
+import guru.springframework.sfgrestbrewery.web.model.BeerBatchGetResult;
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerJson;
 import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
 import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
 import io.micrometer.core.instrument.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.query.Criteria;
 import org.springframework.data.relational.core.query.Query;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.springframework.data.r2dbc.query.Criteria.where;
@@ -29,49 +46,184 @@ import static org.springframework.data.r2dbc.query.Criteria.where;
 @Service
 @RequiredArgsConstructor
 public class BeerServiceImpl implements BeerService {
+    // check and write in one statement, so concurrent adjustments can neither be lost nor take stock below zero.
+    // The version is bumped so a concurrent updateBeer holding the old row fails its optimistic lock and retries.
+    private static final String ADJUST_INVENTORY = "UPDATE beer SET quantity_on_hand = COALESCE(quantity_on_hand, 0) + $1, "
+            + "version = COALESCE(version, 0) + 1 WHERE id = $2 AND COALESCE(quantity_on_hand, 0) + $1 >= 0";
+
+    private static final int UPDATE_RETRIES = 3;
+
     private final BeerRepository beerRepository;
     private final BeerMapper beerMapper;
     private final R2dbcEntityTemplate r2dbcEntityTemplate;
+    private final TransactionalOperator transactionalOperator;
+    private final BeerCache beerCache;
+    private final BeerLookup beerLookup;
+    private final BeerSearchIndex beerSearchIndex;
+    private final BeerInventory beerInventory;
+    private final BeerMetrics beerMetrics;
+    private final BeerQueryLimiter beerQueryLimiter;
+    private final BeerReadModel beerReadModel;
+    private final ObjectMapper objectMapper;
 
-    @Cacheable(cacheNames = "beerListCache", condition = "#showInventoryOnHand == false ")
     @Override
     public Mono<BeerPagedList> listBeers(String beerName, BeerStyleEnum beerStyle, PageRequest pageRequest, Boolean showInventoryOnHand) {
-        // strange that the rd Query is not used
-        Query query = null;
-        if (!StringUtils.isEmpty(beerName) && beerStyle != null) {
-            query = Query.query(where("beerName").is(beerName).and("beerStyle").is(beerStyle));
 
+        String sortKey;
+        try {
+            sortKey = BeerCursor.sortKeyOf(pageRequest.getSort());
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ServerWebInputException(e.getMessage()));
+        }
+
+        Criteria criteria = filterCriteria(beerName, beerStyle);
+
+        Query query = Query.query(criteria)
+                .sort(BeerCursor.sortFor(sortKey))
+                .offset(pageRequest.getOffset())
+                .limit(pageRequest.getPageSize());
+
+        return cachedList("listBeers", new BeerListKey(beerName, beerStyle, pageRequest, null), showInventoryOnHand,
+                () -> beerReadModel.isServing()
+                        ? modelPage("listBeers", beerName, beerStyle, sortKey, null, pageRequest.getOffset(),
+                                pageRequest.getPageNumber(), pageRequest.getPageSize())
+                        : page("listBeers", query, criteria, sortKey, pageRequest.getPageNumber(), pageRequest.getPageSize()));
+    }
+
+    @Override
+    public Mono<BeerPagedList> listBeersFromCursor(String beerName, BeerStyleEnum beerStyle, String cursor, Integer pageSize, Boolean showInventoryOnHand) {
+
+        BeerCursor beerCursor;
+        try {
+            beerCursor = BeerCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ServerWebInputException(e.getMessage()));
+        }
+
+        Criteria criteria = filterCriteria(beerName, beerStyle);
+
+        // seek past the last row of the previous page instead of skipping over it
+        Criteria seek = beerCursor.seekCriteria();
+        Query query = Query.query(criteria.isEmpty() ? seek : criteria.and(seek))
+                .sort(BeerCursor.sortFor(beerCursor.getSortKey()))
+                .limit(pageSize);
+
+        return cachedList("listBeersFromCursor", new BeerListKey(beerName, beerStyle, PageRequest.of(0, pageSize), cursor),
+                showInventoryOnHand, () -> beerReadModel.isServing()
+                        ? modelPage("listBeersFromCursor", beerName, beerStyle, beerCursor.getSortKey(), beerCursor, 0,
+                                beerCursor.getPage() + 1, pageSize)
+                        : page("listBeersFromCursor", query, criteria, beerCursor.getSortKey(), beerCursor.getPage() + 1,
+                                pageSize));
+    }
+
+    @Override
+    public Flux<BeerDto> streamBeers(String beerName, BeerStyleEnum beerStyle, Boolean showInventoryOnHand) {
+
+        if (beerReadModel.isServing()) {
+            return beerMetrics.uncached("streamBeers", Flux.defer(() -> Flux.fromIterable(
+                            beerReadModel.list(beerName, beerStyle, BeerCursor.DEFAULT_SORT_KEY)))
+                    .map(beerMetrics.mapping("streamBeers", showInventoryOnHand ? this::withInventory : beerMapper::beerToBeerDto)));
+        }
+
+        // rows are pulled from the driver as the client asks for them, nothing is collected
+        Flux<Beer> beers = r2dbcEntityTemplate.select(Beer.class)
+                .matching(Query.query(filterCriteria(beerName, beerStyle)).sort(BeerCursor.sortFor(BeerCursor.DEFAULT_SORT_KEY)))
+                .all();
+
+        return beerMetrics.uncached("streamBeers", db("streamBeers", beers)
+                .map(beerMetrics.mapping("streamBeers", showInventoryOnHand ? this::withInventory : beerMapper::beerToBeerDto)));
+    }
+
+    @Override
+    public Flux<BeerDto> searchBeers(String prefix, int limit) {
+
+        return Flux.fromIterable(beerSearchIndex.search(prefix, limit));
+    }
+
+    private Mono<BeerPagedList> cachedList(String method, BeerListKey key, Boolean showInventoryOnHand,
+                                           Supplier<Mono<BeerPagedList>> loader) {
+        if (showInventoryOnHand) {
+            return beerMetrics.uncached(method, loader.get());
+        }
+        return beerMetrics.cached(method, timedLoader -> beerCache.getList(key, timedLoader), loader);
+    }
+
+    private Mono<BeerPagedList> page(String method, Query query, Criteria criteria, String sortKey, int pageNumber, int pageSize) {
+
+        // the count only carries the filter, so it stays accurate whichever way the page was reached
+        Mono<Long> total = db(method + ".count", r2dbcEntityTemplate.count(Query.query(criteria), Beer.class));
+
+        Mono<List<BeerDto>> beers = db(method, r2dbcEntityTemplate.select(Beer.class)
+                        .matching(query)
+                        .all())
+                .map(beerMetrics.mapping(method, this::listedBeer))
+                .collect(Collectors.toList());
+
+        return Mono.zip(beers, total).map(pageAndTotal -> pagedList(pageAndTotal.getT1(), pageAndTotal.getT2(),
+                sortKey, pageNumber, pageSize));
+    }
+
+    /**
+     * page, from the read model. A cursor seeks past its last row, otherwise the listing is entered at offset.
+     */
+    private Mono<BeerPagedList> modelPage(String method, String beerName, BeerStyleEnum beerStyle, String sortKey,
+                                          BeerCursor cursor, long offset, int pageNumber, int pageSize) {
+        return Mono.fromSupplier(() -> {
+            List<Beer> listing = beerReadModel.list(beerName, beerStyle, sortKey);
+            int from = cursor != null
+                    ? BeerReadModel.indexAfter(listing, cursor)
+                    : (int) Math.min(offset, listing.size());
+
+            Function<Beer, BeerDto> mapper = beerMetrics.mapping(method, this::listedBeer);
+            List<BeerDto> content = listing.subList(from, Math.min(listing.size(), from + pageSize)).stream()
+                    .map(mapper)
+                    .collect(Collectors.toList());
+
+            return pagedList(content, listing.size(), sortKey, pageNumber, pageSize);
+        });
+    }
+
+    // list pages never carry inventory, showInventoryOnHand only keeps them out of the cache
+    private BeerDto listedBeer(Beer beer) {
+        return beerMapper.beerToBeerDto(beer);
+    }
+
+    private static BeerPagedList pagedList(List<BeerDto> content, long totalElements, String sortKey, int pageNumber,
+                                           int pageSize) {
+        String nextCursor = null;
+        if (!content.isEmpty() && (long) (pageNumber + 1) * pageSize < totalElements) {
+            nextCursor = BeerCursor.after(sortKey, pageNumber, content.get(content.size() - 1)).encode();
+        }
+
+        return new BeerPagedList(content, PageRequest.of(pageNumber, pageSize), totalElements, nextCursor);
+    }
+
+    // package private for ListQueryBenchmark
+    static Criteria filterCriteria(String beerName, BeerStyleEnum beerStyle) {
+        if (!StringUtils.isEmpty(beerName) && beerStyle != null) {
+            return where("beerName").is(beerName).and("beerStyle").is(beerStyle);
         } else if (!StringUtils.isEmpty(beerName) && beerStyle == null) {
-            query = Query.query(where("beerName").is(beerName));
+            return where("beerName").is(beerName);
         } else if (StringUtils.isEmpty(beerName) && beerStyle != null) {
-            query = Query.query(where("beerStyle").is(beerStyle));
+            return where("beerStyle").is(beerStyle);
         } else {
-            query = Query.empty();
+            return Criteria.empty();
         }
-
-        return r2dbcEntityTemplate.select(Beer.class)
-                .matching(query.with(pageRequest))
-                .all()
-                .map(beerMapper::beerToBeerDto)
-                .collect(Collectors.toList())
-                .map(beers -> {
-                    return new BeerPagedList(beers, PageRequest.of(pageRequest.getPageNumber(), pageRequest.getPageSize()), beers.size());
-                });
-
     }
 
-    @Cacheable(cacheNames = "beerCache", key = "#beerId", condition = "#showInventoryOnHand == false ")
     @Override
     public Mono<BeerDto> getById(Integer beerId, Boolean showInventoryOnHand) {
         if (showInventoryOnHand) {
 
-            return beerRepository.findById(beerId)
-                    .map(beerMapper::beerToBeerDtoWithInventory);
+            // inventory moves too often to be served from the cache
+            return beerMetrics.uncached("getById", findById("getById", beerId)
+                    .map(beerMetrics.mapping("getById", this::withInventory)));
 
         } else {
 
-            return beerRepository.findById(beerId)
-                    .map(beerMapper::beerToBeerDto);
+            return beerMetrics.cached("getById", loader -> beerCache.getById(beerId, loader),
+                    () -> findById("getById", beerId)
+                            .map(beerMetrics.mapping("getById", beerMapper::beerToBeerDto)));
 
         }
     }
@@ -79,63 +231,253 @@ public class BeerServiceImpl implements BeerService {
     @Override
     public Mono<BeerDto> saveNewBeer(BeerDto beerDto) {
 //        return beerMapper.beerToBeerDto(beerRepository.save(beerMapper.beerDtoToBeer(beerDto)));
-        return beerRepository.save(beerMapper.beerDtoToBeer(beerDto)).map(beerMapper::beerToBeerDto);
+        return beerMetrics.uncached("saveNewBeer", db("saveNewBeer", beerRepository.save(beerMapper.beerDtoToBeer(beerDto)))
+                .doOnNext(this::saved)
+                .map(beerMetrics.mapping("saveNewBeer", beerMapper::beerToBeerDto)));
     }
 
     @Override
     public Mono<BeerDto> saveNewBeerMono(Mono<BeerDto> beerDto      ){
 
-        return beerDto.map(beerMapper::beerDtoToBeer)
-                .flatMap(beerRepository::save)
-        .map(beerMapper::beerToBeerDto);
+        return beerMetrics.uncached("saveNewBeer", beerDto.map(beerMapper::beerDtoToBeer)
+                .flatMap(beer -> db("saveNewBeer", beerRepository.save(beer)))
+                .doOnNext(this::saved)
+        .map(beerMetrics.mapping("saveNewBeer", beerMapper::beerToBeerDto)));
 
     }
 
+    @Override
+    public Flux<BeerDto> saveNewBeers(List<BeerDto> beerDtos) {
+
+        if (beerDtos.isEmpty()) {
+            return Flux.empty();
+        }
+
+        List<Beer> beers = beerDtos.stream().map(beerMapper::beerDtoToBeer).collect(Collectors.toList());
+
+        // one INSERT with a binding set per beer, sent to the database as a single batch
+        Flux<Integer> ids = beerRepository.insertAll(beers);
+
+        return beerMetrics.uncached("saveNewBeers", db("saveNewBeers", transactionalOperator.transactional(ids.collectList()))
+                .flatMapMany(savedIds -> {
+                    for (int i = 0; i < savedIds.size(); i++) {
+                        Beer beer = beers.get(i);
+                        beer.setId(savedIds.get(i));
+                        // the version the insert wrote, without it the beer would have no ETag and differ from its row
+                        if (beer.getVersion() == null) {
+                            beer.setVersion(0L);
+                        }
+                        beerSearchIndex.put(beer);
+                    }
+                    beerReadModel.putAll(beers);
+                    beerCache.evictLists();
+                    return Flux.fromIterable(beers).map(beerMetrics.mapping("saveNewBeers", beerMapper::beerToBeerDto));
+                }));
+    }
+
+    private void saved(Beer beer) {
+        beerReadModel.put(beer);
+        beerCache.evictLists();
+        beerSearchIndex.put(beer);
+    }
+
     @Override
     public Mono<BeerDto> updateBeer(Integer beerId, BeerDto beerDto) {
+        return updateBeer(beerId, beerDto, null);
+    }
 
-        return beerRepository.findById(beerId)
+    @Override
+    public Mono<BeerDto> updateBeer(Integer beerId, BeerDto beerDto, Long expectedVersion) {
+
+        return beerMetrics.uncached("updateBeer", db("updateBeer", beerRepository.findById(beerId))
                 .defaultIfEmpty(Beer.builder().build())
-                .map(beer -> {
+                .flatMap(beer -> {
+                    // checked on every read, so a retry after a concurrent write fails here instead of overwriting it
+                    if (beer.getId() != null && expectedVersion != null && !expectedVersion.equals(beer.getVersion())) {
+                        return Mono.error(new PreconditionFailedException("Beer " + beerId + " is at version "
+                                + beer.getVersion() + ", not " + expectedVersion));
+                    }
+
+                    String previousUpc = beer.getUpc();
+
                     beer.setBeerName(beerDto.getBeerName());
                     beer.setBeerStyle(BeerStyleEnum.valueOf(beerDto.getBeerStyle()));
                     beer.setPrice(beerDto.getPrice());
                     beer.setUpc(beerDto.getUpc());
-                    return beer;
-                }).flatMap(updatedBeer -> {
-                    if (updatedBeer.getId() != null) {
-                        return beerRepository.save(updatedBeer);
+                    beer.setLastModifiedDate(LocalDateTime.now());
+
+                    if (beer.getId() != null) {
+                        // evict once the row is written so a concurrent read can't cache the old state again
+                        return db("updateBeer", beerRepository.save(beer))
+                                .doOnNext(savedBeer -> {
+                                    beerReadModel.put(savedBeer);
+                                    beerCache.evict(savedBeer.getId(), previousUpc, savedBeer.getUpc());
+                                    beerSearchIndex.put(savedBeer);
+                                });
                     }
-                    return Mono.just(updatedBeer);
+                    return Mono.just(beer);
                 })
-                .map(beerMapper::beerToBeerDto);
+                // the row changed since it was read, most likely its inventory, so read it again and reapply
+                .retryWhen(Retry.max(UPDATE_RETRIES)
+                        .filter(OptimisticLockingFailureException.class::isInstance)
+                        .onRetryExhaustedThrow((retrySpec, retrySignal) -> retrySignal.failure()))
+                .map(beerMetrics.mapping("updateBeer", beerMapper::beerToBeerDto)));
 
 
     }
 
-    @Cacheable(cacheNames = "beerUpcCache")
+    @Override
+    public Mono<BeerDto> adjustInventory(Integer beerId, int delta) {
+
+        if (beerInventory.isEnabled()) {
+            // stock lives in memory, the rest of the beer rarely changes and comes from the cache
+            return beerMetrics.uncached("adjustInventory", beerInventory.adjust(beerId, delta)
+                    .flatMap(onHand -> getById(beerId, false)
+                            .map(beerMapper::copy)
+                            .doOnNext(beerDto -> beerDto.setQuantityOnHand(onHand))));
+        }
+
+        Mono<Integer> adjusted = r2dbcEntityTemplate.getDatabaseClient().sql(ADJUST_INVENTORY)
+                .bind(0, delta)
+                .bind(1, beerId)
+                .fetch()
+                .rowsUpdated();
+
+        return beerMetrics.uncached("adjustInventory", db("adjustInventory", adjusted)
+                .flatMap(updated -> db("adjustInventory", beerRepository.findById(beerId))
+                        .switchIfEmpty(Mono.error(new NotFoundException()))
+                        // the version moved, so the cached beer and its ETag are stale
+                        .doOnNext(beer -> {
+                            if (updated > 0) {
+                                beerReadModel.put(beer);
+                                beerCache.evictBeer(beer.getId(), beer.getUpc());
+                            }
+                        })
+                        .flatMap(beer -> updated == 0
+                                ? Mono.error(new InsufficientInventoryException("Beer " + beerId + " has "
+                                        + beer.getQuantityOnHand() + " on hand, cannot adjust by " + delta))
+                                : Mono.just(beer)))
+                .map(beerMetrics.mapping("adjustInventory", this::withInventory)));
+    }
+
+    // point lookups are answered by the read model when it is serving, with no query at all
+    private Mono<Beer> findById(String method, Integer beerId) {
+        if (beerReadModel.isServing()) {
+            return Mono.fromSupplier(() -> beerReadModel.findById(beerId));
+        }
+        return beerMetrics.db(method, beerLookup.findById(beerId));
+    }
+
+    private Mono<Beer> findByUpc(String method, String upc) {
+        if (beerReadModel.isServing()) {
+            return Mono.fromSupplier(() -> beerReadModel.findByUpc(upc));
+        }
+        return beerMetrics.db(method, beerLookup.findByUpc(upc));
+    }
+
+    // the query waits for a slot under the adaptive limit, and beer.db only times it once it has one
+    private <T> Mono<T> db(String method, Mono<T> query) {
+        return beerQueryLimiter.limit(beerMetrics.db(method, query));
+    }
+
+    private <T> Flux<T> db(String method, Flux<T> query) {
+        return beerQueryLimiter.limit(beerMetrics.db(method, query));
+    }
+
+    private BeerDto withInventory(Beer beer) {
+        BeerDto beerDto = beerMapper.beerToBeerDtoWithInventory(beer);
+        Integer onHand = beerInventory.quantityOnHand(beer.getId());
+        if (onHand != null) {
+            beerDto.setQuantityOnHand(onHand);
+        }
+        return beerDto;
+    }
+
     @Override
     public Mono<BeerDto> getByUpc(String upc) {
 
-        return beerRepository.findByUpc(upc).map(beerMapper::beerToBeerDto);
+        return beerMetrics.cached("getByUpc", loader -> beerCache.getByUpc(upc, loader),
+                () -> findByUpc("getByUpc", upc)
+                        .map(beerMetrics.mapping("getByUpc", beerMapper::beerToBeerDto)));
+
+
+    }
 
+    @Override
+    public Mono<BeerJson> getByIdAsJson(Integer beerId) {
 
+        return beerMetrics.cached("getByIdAsJson", loader -> beerCache.getJsonById(beerId, loader),
+                () -> getById(beerId, false).map(this::json));
     }
 
     @Override
-    public void deleteBeerById(Integer beerId) {
+    public Mono<BeerJson> getByUpcAsJson(String upc) {
 
-        beerRepository.deleteById(beerId).subscribe();
+        return beerMetrics.cached("getByUpcAsJson", loader -> beerCache.getJsonByUpc(upc, loader),
+                () -> getByUpc(upc).map(this::json));
+    }
+
+    private BeerJson json(BeerDto beerDto) {
+        try {
+            return new BeerJson(objectMapper.writeValueAsBytes(beerDto), beerDto);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode beer " + beerDto.getId(), e);
+        }
+    }
+
+    @Override
+    public Flux<BeerBatchGetResult> getByIds(List<Integer> beerIds, Boolean showInventoryOnHand) {
+
+        Flux<Beer> beers = beerReadModel.isServing()
+                ? Flux.defer(() -> Flux.fromIterable(beerReadModel.findAllById(new HashSet<>(beerIds))))
+                : db("getByIds", beerRepository.findAllById(new HashSet<>(beerIds)));
+        return inRequestOrder("getByIds", beerIds, beers, Beer::getId, showInventoryOnHand);
+    }
+
+    @Override
+    public Flux<BeerBatchGetResult> getByUpcs(List<String> upcs, Boolean showInventoryOnHand) {
+
+        Flux<Beer> beers = beerReadModel.isServing()
+                ? Flux.defer(() -> Flux.fromIterable(beerReadModel.findAllByUpc(new HashSet<>(upcs))))
+                : db("getByUpcs", beerRepository.findAllByUpcIn(new HashSet<>(upcs)));
+        return inRequestOrder("getByUpcs", upcs, beers, Beer::getUpc, showInventoryOnHand);
+    }
+
+    /**
+     * One query for all keys, answered in the order the keys were asked for with a marker for the missing ones
+     */
+    private <K> Flux<BeerBatchGetResult> inRequestOrder(String method, List<K> keys, Flux<Beer> beers,
+                                                        Function<Beer, K> keyOf, Boolean showInventoryOnHand) {
+
+        Function<Beer, BeerDto> mapper = beerMetrics.mapping(method,
+                showInventoryOnHand ? this::withInventory : beerMapper::beerToBeerDto);
+
+        return beerMetrics.uncached(method, beers.collectMap(keyOf, mapper)
+                .flatMapMany(found -> Flux.fromIterable(keys)
+                        .map(key -> BeerBatchGetResult.builder()
+                                .key(String.valueOf(key))
+                                .found(found.containsKey(key))
+                                .beer(found.get(key))
+                                .build())));
     }
 
     @Override
     public Mono<Void> deleteReactiveBeer(Integer beerId) {
-        return beerRepository.findById(beerId)
+        return beerMetrics.uncached("deleteBeer", db("deleteBeer", beerRepository.findById(beerId))
         .switchIfEmpty(Mono.error(new NotFoundException()))
-                .map(beer -> beer.getId())
-                .flatMap(id -> beerRepository.deleteById(id));
+                .flatMap(this::delete));
 
     }
 
+    private Mono<Void> delete(Beer beer) {
+        return db("deleteBeer", beerRepository.deleteById(beer.getId()))
+                .doOnSuccess(deleted -> {
+                    beerReadModel.remove(beer.getId());
+                    beerCache.evict(beer.getId(), beer.getUpc());
+                    beerSearchIndex.remove(beer.getId());
+                    beerInventory.forget(beer.getId());
+                });
+    }
+
 
 }
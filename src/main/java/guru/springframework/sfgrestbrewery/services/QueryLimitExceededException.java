@@ -0,0 +1,11 @@
+package guru.springframework.sfgrestbrewery.services;
+
+/**
+ * A query found the adaptive limit reached and could not get a slot within the queueing time.
+ */
+public class QueryLimitExceededException extends RuntimeException {
+
+    public QueryLimitExceededException(String message) {
+        super(message);
+    }
+}
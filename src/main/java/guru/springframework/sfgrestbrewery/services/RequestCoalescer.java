@@ -0,0 +1,49 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Single flight for reactive lookups. The first caller for a key starts the load, everyone arriving
+ * while it is still running gets the same result. The load is subscribed independently of the callers,
+ * so a caller cancelling never aborts the query the others are waiting on.
+ */
+public class RequestCoalescer<K, V> {
+
+    private final Map<K, Sinks.One<V>> inFlight = new ConcurrentHashMap<>();
+    private final Function<K, Mono<V>> loader;
+    private final Counter coalesced;
+
+    public RequestCoalescer(String name, Function<K, Mono<V>> loader, MeterRegistry meterRegistry) {
+        this.loader = loader;
+        this.coalesced = Counter.builder("beer.lookup.coalesced")
+                .description("Lookups that joined a query already in flight for the same key")
+                .tag("lookup", name)
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("beer.lookup.inflight", Tags.of("lookup", name), inFlight);
+    }
+
+    public Mono<V> get(K key) {
+        return Mono.defer(() -> {
+            Sinks.One<V> sink = Sinks.one();
+            Sinks.One<V> existing = inFlight.putIfAbsent(key, sink);
+            if (existing != null) {
+                coalesced.increment();
+                return existing.asMono();
+            }
+
+            loader.apply(key)
+                    .doFinally(signal -> inFlight.remove(key, sink))
+                    .subscribe(sink::tryEmitValue, sink::tryEmitError, sink::tryEmitEmpty);
+
+            return sink.asMono();
+        });
+    }
+}
@@ -0,0 +1,162 @@
+package guru.springframework.sfgrestbrewery.web.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control for the beer routes of both APIs, so a spike is turned away at the door instead of
+ * queueing on the database and slowing down everyone. A request is refused:
+ *
+ * 429 with a Retry-After when its route's token bucket is empty, a cheap early rejection before any work
+ * 503 with a Retry-After when too many beer requests are in flight for its route's priority
+ *
+ * All routes share one in-flight count but may only take a share of the limit, lists and searches the
+ * smallest, so they are shed while point lookups are still admitted. A request holds its slot until its
+ * response is written, which for a stream is its last element. Outcomes are counted in beer.admission,
+ * tagged with the route and admitted, throttled or shed.
+ *
+ * Off unless sfg.brewery.admission.enabled is set. The defaults are starting points, not limits measured
+ * for any deployment, and they apply per instance:
+ *
+ * lookup.rate, write.rate, list.rate  requests per second each route's bucket refills at, 5000, 1000 and 500
+ * burst                               how much of its rate a bucket holds for a burst, 1s
+ * max-concurrency                     beer requests in flight before lookups are shed, 200
+ * write-share, list-share             the part of max-concurrency writes and lists may take, 0.8 and 0.5
+ *
+ * Set the rates from a load test of the deployment, BeerLoadHarness for one, a little under the throughput
+ * at which latency starts to climb, and max-concurrency to what that throughput keeps in flight.
+ */
+@Slf4j
+@Component
+public class AdmissionControlFilter implements WebFilter {
+
+    public static final String ADMISSION_COUNTER = "beer.admission";
+    public static final String IN_FLIGHT_GAUGE = "beer.admission.in-flight";
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<AdmissionRoute, Integer> concurrencyLimits = new EnumMap<>(AdmissionRoute.class);
+    private final Map<AdmissionRoute, TokenBucket> buckets = new EnumMap<>(AdmissionRoute.class);
+    private final Map<AdmissionRoute, Counter> admitted = new EnumMap<>(AdmissionRoute.class);
+    private final Map<AdmissionRoute, Counter> throttled = new EnumMap<>(AdmissionRoute.class);
+    private final Map<AdmissionRoute, Counter> shed = new EnumMap<>(AdmissionRoute.class);
+
+    @Autowired
+    public AdmissionControlFilter(MeterRegistry meterRegistry,
+                                  @Value("${sfg.brewery.admission.enabled:false}") boolean enabled,
+                                  @Value("${sfg.brewery.admission.max-concurrency:200}") int maxConcurrency,
+                                  @Value("${sfg.brewery.admission.write-share:0.8}") double writeShare,
+                                  @Value("${sfg.brewery.admission.list-share:0.5}") double listShare,
+                                  @Value("${sfg.brewery.admission.lookup.rate:5000}") double lookupRate,
+                                  @Value("${sfg.brewery.admission.write.rate:1000}") double writeRate,
+                                  @Value("${sfg.brewery.admission.list.rate:500}") double listRate,
+                                  @Value("${sfg.brewery.admission.burst:1s}") Duration burst) {
+        this(meterRegistry, enabled, maxConcurrency, writeShare, listShare, lookupRate, writeRate, listRate, burst,
+                System::nanoTime);
+    }
+
+    AdmissionControlFilter(MeterRegistry meterRegistry, boolean enabled, int maxConcurrency,
+                           double writeShare, double listShare,
+                           double lookupRate, double writeRate, double listRate,
+                           Duration burst, LongSupplier nanoTime) {
+        this.enabled = enabled;
+
+        concurrencyLimits.put(AdmissionRoute.LOOKUP, maxConcurrency);
+        concurrencyLimits.put(AdmissionRoute.WRITE, share(maxConcurrency, writeShare));
+        concurrencyLimits.put(AdmissionRoute.LIST, share(maxConcurrency, listShare));
+
+        buckets.put(AdmissionRoute.LOOKUP, new TokenBucket(lookupRate, burst, nanoTime));
+        buckets.put(AdmissionRoute.WRITE, new TokenBucket(writeRate, burst, nanoTime));
+        buckets.put(AdmissionRoute.LIST, new TokenBucket(listRate, burst, nanoTime));
+
+        for (AdmissionRoute route : AdmissionRoute.values()) {
+            admitted.put(route, counter(meterRegistry, route, "admitted"));
+            throttled.put(route, counter(meterRegistry, route, "throttled"));
+            shed.put(route, counter(meterRegistry, route, "shed"));
+        }
+        Gauge.builder(IN_FLIGHT_GAUGE, inFlight, AtomicInteger::get)
+                .description("Beer requests admitted and not yet answered")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        AdmissionRoute route = enabled ? AdmissionRoute.of(request.getMethod(), request.getPath().pathWithinApplication()) : null;
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        long waitNanos = buckets.get(route).tryAcquire();
+        if (waitNanos > 0) {
+            throttled.get(route).increment();
+            log.debug("Throttling {} {}, {} rate exceeded", request.getMethod(), request.getPath(), route);
+            return reject(exchange.getResponse(), HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds(waitNanos));
+        }
+
+        if (!tryEnter(concurrencyLimits.get(route))) {
+            shed.get(route).increment();
+            log.debug("Shedding {} {}, too many requests in flight for {}", request.getMethod(), request.getPath(), route);
+            return reject(exchange.getResponse(), HttpStatus.SERVICE_UNAVAILABLE, 1);
+        }
+
+        admitted.get(route).increment();
+        return chain.filter(exchange).doFinally(signal -> inFlight.decrementAndGet());
+    }
+
+    private boolean tryEnter(int limit) {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private static Mono<Void> reject(ServerHttpResponse response, HttpStatus status, long retryAfterSeconds) {
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return response.setComplete();
+    }
+
+    // Retry-After takes whole seconds, rounded up so a client that honours it finds a token
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+    }
+
+    private static int share(int maxConcurrency, double share) {
+        return Math.max(1, (int) (maxConcurrency * share));
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, AdmissionRoute route, String outcome) {
+        return Counter.builder(ADMISSION_COUNTER)
+                .description("Beer requests by admission outcome")
+                .tag("route", route.name().toLowerCase())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,67 @@
+package guru.springframework.sfgrestbrewery.web.admission;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static guru.springframework.sfgrestbrewery.web.functional.BeerRouterConfig.API_V_2_BEER;
+import static guru.springframework.sfgrestbrewery.web.functional.BeerRouterConfig.API_V_2_BEER_BATCH_GET;
+import static guru.springframework.sfgrestbrewery.web.functional.BeerRouterConfig.API_V_2_BEER_ID;
+import static guru.springframework.sfgrestbrewery.web.functional.BeerRouterConfig.API_V_2_BEER_SEARCH;
+import static guru.springframework.sfgrestbrewery.web.functional.BeerRouterConfig.API_V_2_BEER_UPC;
+
+/**
+ * The beer routes grouped by what they cost and how much a caller loses when one is refused. Lists, streams
+ * and searches read many rows and are the first to be shed, point lookups are cheap and are the last.
+ */
+public enum AdmissionRoute {
+
+    LOOKUP,
+    WRITE,
+    LIST;
+
+    private static final List<PathPattern> LIST_PATTERNS = patterns("/api/v1/beer", API_V_2_BEER, API_V_2_BEER_SEARCH);
+    private static final List<PathPattern> LOOKUP_PATTERNS = patterns("/api/v1/beer/{beerId}", "/api/v1/beerUpc/{upc}",
+            API_V_2_BEER_ID, API_V_2_BEER_UPC, API_V_2_BEER_BATCH_GET);
+    private static final List<PathPattern> BATCH_GET_PATTERNS = patterns(API_V_2_BEER_BATCH_GET);
+    private static final List<PathPattern> BEER_PATTERNS = patterns("/api/v1/beer/**", "/api/v1/beerUpc/**",
+            "/api/v2/beer/**", "/api/v2/beerUpc/**", API_V_2_BEER_BATCH_GET);
+
+    /**
+     * Null for anything that isn't a beer route, those are let through.
+     */
+    public static AdmissionRoute of(HttpMethod method, PathContainer path) {
+        if (HttpMethod.GET.equals(method)) {
+            // search before lookups, the id pattern would take it too
+            if (matches(LIST_PATTERNS, path)) {
+                return LIST;
+            }
+            return matches(LOOKUP_PATTERNS, path) ? LOOKUP : null;
+        }
+        if (HttpMethod.POST.equals(method) && matches(BATCH_GET_PATTERNS, path)) {
+            return LOOKUP;
+        }
+        if (HttpMethod.POST.equals(method) || HttpMethod.PUT.equals(method) || HttpMethod.DELETE.equals(method)) {
+            return matches(BEER_PATTERNS, path) ? WRITE : null;
+        }
+        return null;
+    }
+
+    private static boolean matches(List<PathPattern> patterns, PathContainer path) {
+        for (PathPattern pattern : patterns) {
+            if (pattern.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<PathPattern> patterns(String... patterns) {
+        return Stream.of(patterns).map(PathPatternParser.defaultInstance::parse).collect(Collectors.toList());
+    }
+}
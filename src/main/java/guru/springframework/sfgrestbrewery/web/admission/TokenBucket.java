@@ -0,0 +1,47 @@
+package guru.springframework.sfgrestbrewery.web.admission;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Refills at a fixed rate up to a burst of tokens. Refilling happens lazily when a token is asked for, so an
+ * idle bucket costs nothing. A rate of zero or less never runs dry.
+ */
+class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double nanosPerToken;
+    private final double capacity;
+    private final LongSupplier nanoTime;
+
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double permitsPerSecond, Duration burst, LongSupplier nanoTime) {
+        this.nanosPerToken = permitsPerSecond > 0 ? NANOS_PER_SECOND / permitsPerSecond : 0;
+        // at least one token, or a short burst and a low rate would refuse everything
+        this.capacity = Math.max(1, permitsPerSecond * burst.toNanos() / NANOS_PER_SECOND);
+        this.nanoTime = nanoTime;
+        this.tokens = capacity;
+        this.refilledAt = nanoTime.getAsLong();
+    }
+
+    /**
+     * Takes a token. Zero when one was taken, otherwise the nanos until one will be available.
+     */
+    synchronized long tryAcquire() {
+        if (nanosPerToken == 0) {
+            return 0;
+        }
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) / nanosPerToken);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * nanosPerToken);
+    }
+}
@@ -1,23 +1,29 @@
 package guru.springframework.sfgrestbrewery.web.controller;
 
 import guru.springframework.sfgrestbrewery.services.BeerService;
+import guru.springframework.sfgrestbrewery.web.functional.BeerRouterConfig;
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerETag;
 import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
 import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-
 /**
  * Created by jt on 2019-04-20.
+ *
+ * Reads carry an ETag, and Last-Modified for a single beer, so a repeated GET with If-None-Match gets a 304
+ * from the ResponseEntity handling. Updates honour If-Match.
  */
 @RequiredArgsConstructor
 @RequestMapping("/api/v1/")
@@ -29,17 +35,24 @@ public class BeerController {
 
     private final BeerService beerService;
 
-    @GetMapping(produces = {"application/json"}, path = "beer")
-    public ResponseEntity<Mono<BeerPagedList>> listBeers(@RequestParam(value = "pageNumber", required = false) Integer pageNumber,
+    // the same encodings as the v2 beer routes, see BeerRouterConfig.BEER_MEDIA_TYPES
+    @GetMapping(produces = {"application/json", "application/x-protobuf", "application/cbor", "application/x-jackson-smile"},
+            path = "beer")
+    public Mono<ResponseEntity<BeerPagedList>> listBeers(@RequestHeader HttpHeaders headers,
+                                                         @RequestParam(value = "pageNumber", required = false) Integer pageNumber,
                                                          @RequestParam(value = "pageSize", required = false) Integer pageSize,
                                                          @RequestParam(value = "beerName", required = false) String beerName,
                                                          @RequestParam(value = "beerStyle", required = false) BeerStyleEnum beerStyle,
-                                                         @RequestParam(value = "showInventoryOnHand", required = false) Boolean showInventoryOnHand) {
+                                                         @RequestParam(value = "showInventoryOnHand", required = false) Boolean showInventoryOnHand,
+                                                         @RequestParam(value = "sortBy", required = false) String sortBy,
+                                                         @RequestParam(value = "cursor", required = false) String cursor) {
 
         if (showInventoryOnHand == null) {
             showInventoryOnHand = false;
         }
 
+        MediaType mediaType = BeerRouterConfig.beerMediaType(headers.getAccept());
+
         if (pageNumber == null || pageNumber < 0) {
             pageNumber = DEFAULT_PAGE_NUMBER;
         }
@@ -48,9 +61,34 @@ public class BeerController {
             pageSize = DEFAULT_PAGE_SIZE;
         }
 
-        Mono<BeerPagedList> beerList = beerService.listBeers(beerName, beerStyle, PageRequest.of(pageNumber, pageSize), showInventoryOnHand);
+        if (cursor != null) {
+            // the cursor carries its own sort key and position, pageNumber is ignored
+            return beerService.listBeersFromCursor(beerName, beerStyle, cursor, pageSize, showInventoryOnHand)
+                    .map(beerPagedList -> page(beerPagedList, mediaType));
+        }
+
+        PageRequest pageRequest = sortBy == null ? PageRequest.of(pageNumber, pageSize)
+                : PageRequest.of(pageNumber, pageSize, Sort.by(sortBy));
+
+        Mono<BeerPagedList> beerList = beerService.listBeers(beerName, beerStyle, pageRequest, showInventoryOnHand);
+
+        return beerList.map(beerPagedList -> page(beerPagedList, mediaType));
+    }
 
-        return ResponseEntity.ok(beerList);
+    // each encoding of a page is its own representation, with its own strong ETag
+    private ResponseEntity<BeerPagedList> page(BeerPagedList beerPagedList, MediaType mediaType) {
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(BeerETag.of(beerPagedList, mediaType))
+                .body(beerPagedList);
+    }
+
+    private ResponseEntity<BeerDto> beer(BeerDto beerDto) {
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok().eTag(BeerETag.of(beerDto));
+        if (BeerETag.lastModified(beerDto) != null) {
+            ok.lastModified(BeerETag.lastModified(beerDto));
+        }
+        return ok.body(beerDto);
     }
 
     // spring mvc handling
@@ -60,68 +98,63 @@ public class BeerController {
         return ResponseEntity.notFound().build();
     }
 
+    @ExceptionHandler
+    ResponseEntity<Void> handlePreconditionFailed(PreconditionFailedException preconditionFailedException){
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+    }
+
+    // the unique index on upc is the only constraint a beer can break, see schema.sql
+    @ExceptionHandler
+    ResponseEntity<String> handleDuplicateUpc(DataIntegrityViolationException dataIntegrityViolationException){
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("upc : a beer with this upc already exists");
+    }
+
     @GetMapping("beer/{beerId}")
-    public ResponseEntity<Mono<BeerDto>> getBeerById(@PathVariable("beerId") Integer beerId,
+    public Mono<ResponseEntity<BeerDto>> getBeerById(@PathVariable("beerId") Integer beerId,
                                                      @RequestParam(value = "showInventoryOnHand", required = false) Boolean showInventoryOnHand) {
         if (showInventoryOnHand == null) {
             showInventoryOnHand = false;
         }
 
-        return  ResponseEntity.ok(beerService.getById(beerId, showInventoryOnHand).defaultIfEmpty(
-                BeerDto.builder().build())
-                .doOnNext(beerDto -> {
-                    if (beerDto.getId() == null){
-                        throw new NotFoundException();
-                    }
-
-                })
-        );
+        return beerService.getById(beerId, showInventoryOnHand)
+                .switchIfEmpty(Mono.error(new NotFoundException()))
+                .map(this::beer);
     }
 
     @GetMapping("beerUpc/{upc}")
     public Mono<ResponseEntity<BeerDto>> getBeerByUpc(@PathVariable("upc") String upc) {
 
-        return beerService.getByUpc(upc).map(t -> ResponseEntity.ok(t)).switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+        return beerService.getByUpc(upc).map(this::beer).switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
 
     }
 
     @PostMapping(path = "beer")
-    public ResponseEntity saveNewBeer(@RequestBody @Validated BeerDto beerDto) {
-
-        AtomicInteger beerid = new AtomicInteger();
-        beerService.saveNewBeer(beerDto).subscribe(beerDto1 -> beerid.set(beerDto1.getId()));
-
-
-        return ResponseEntity
-                .created(UriComponentsBuilder
-                        .fromHttpUrl("http://api.springframework.guru/api/v1/beer/" + beerid.toString())
-                        .build().toUri())
-                .build();
+    public Mono<ResponseEntity<Void>> saveNewBeer(@RequestBody @Validated BeerDto beerDto) {
+
+        return beerService.saveNewBeer(beerDto)
+                .map(savedDto -> ResponseEntity
+                        .created(UriComponentsBuilder
+                                .fromHttpUrl("http://api.springframework.guru/api/v1/beer/" + savedDto.getId())
+                                .build().toUri())
+                        .build());
     }
 
     @PutMapping("beer/{beerId}")
-    public ResponseEntity<Void> updateBeerById(@PathVariable("beerId") Integer beerId, @RequestBody @Validated BeerDto beerDto) {
-        AtomicBoolean atomicBoolean = new AtomicBoolean(false);
-        beerService.updateBeer(beerId, beerDto).subscribe(savedDto -> {
-                    if (savedDto.getId() != null) {
-                        atomicBoolean.set(true);
-                    }
-                }
-        );
-        if (atomicBoolean.get()) {
-            return ResponseEntity.noContent().build();
-        }
-        return ResponseEntity.notFound().build();
+    public Mono<ResponseEntity<Void>> updateBeerById(@PathVariable("beerId") Integer beerId, @RequestBody @Validated BeerDto beerDto,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        // updateBeer hands back a beer without an id when there was nothing to update
+        return beerService.updateBeer(beerId, beerDto, BeerETag.expectedVersion(ifMatch, beerId))
+                .map(savedDto -> savedDto.getId() != null
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
     }
 
-
-
     @DeleteMapping("beer/{beerId}")
-    public ResponseEntity<Void> deleteBeerById(@PathVariable("beerId") Integer beerId) {
-
-        beerService.deleteBeerById(beerId);
+    public Mono<ResponseEntity<Void>> deleteBeerById(@PathVariable("beerId") Integer beerId) {
 
-        return ResponseEntity.ok().build();
+        return beerService.deleteReactiveBeer(beerId)
+                .thenReturn(ResponseEntity.ok().build());
     }
 
 }
@@ -0,0 +1,11 @@
+package guru.springframework.sfgrestbrewery.web.controller;
+
+/**
+ * An inventory adjustment would take the quantity on hand below zero.
+ */
+public class InsufficientInventoryException extends RuntimeException {
+
+    public InsufficientInventoryException(String message) {
+        super(message);
+    }
+}
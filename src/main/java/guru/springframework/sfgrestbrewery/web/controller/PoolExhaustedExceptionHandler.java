@@ -0,0 +1,46 @@
+package guru.springframework.sfgrestbrewery.web.controller;
+
+import guru.springframework.sfgrestbrewery.config.ConnectionPoolExhaustedException;
+import guru.springframework.sfgrestbrewery.services.QueryLimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebExceptionHandler;
+import reactor.core.publisher.Mono;
+
+/**
+ * Answers 503 with a Retry-After when a request failed because the database pool was saturated or the
+ * adaptive query limit turned it away, for both the v1 controllers and the v2 routes. Spring wraps the
+ * pool error, so the whole cause chain is checked. Runs ahead of boot's error handler, which would
+ * report a 500.
+ */
+@Slf4j
+@Component
+@Order(-2)
+public class PoolExhaustedExceptionHandler implements WebExceptionHandler {
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        if (!isPoolExhausted(ex) || exchange.getResponse().isCommitted()) {
+            return Mono.error(ex);
+        }
+
+        log.debug("Rejecting {} {}, no database capacity available", exchange.getRequest().getMethod(),
+                exchange.getRequest().getPath());
+        exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+        return exchange.getResponse().setComplete();
+    }
+
+    private boolean isPoolExhausted(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectionPoolExhaustedException || cause instanceof QueryLimitExceededException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
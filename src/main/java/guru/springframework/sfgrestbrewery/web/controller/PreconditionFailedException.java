@@ -0,0 +1,11 @@
+package guru.springframework.sfgrestbrewery.web.controller;
+
+/**
+ * The beer changed since the version an If-Match header asked for.
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -1,18 +1,48 @@
 package guru.springframework.sfgrestbrewery.web.functional;
 
+import guru.springframework.sfgrestbrewery.services.BeerJsonRows;
+import guru.springframework.sfgrestbrewery.services.BeerReadModel;
 import guru.springframework.sfgrestbrewery.services.BeerService;
+import guru.springframework.sfgrestbrewery.web.controller.InsufficientInventoryException;
 import guru.springframework.sfgrestbrewery.web.controller.NotFoundException;
+import guru.springframework.sfgrestbrewery.web.controller.PreconditionFailedException;
+import guru.springframework.sfgrestbrewery.web.model.BeerBatchGetRequest;
+import guru.springframework.sfgrestbrewery.web.model.BeerBatchGetResult;
+import guru.springframework.sfgrestbrewery.web.model.BeerBulkResult;
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerETag;
+import guru.springframework.sfgrestbrewery.web.model.BeerInventoryAdjustment;
+import guru.springframework.sfgrestbrewery.web.model.BeerJson;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.Errors;
 import org.springframework.validation.Validator;
+import org.springframework.web.reactive.function.BodyInserter;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
@@ -25,12 +55,39 @@ public class BeerHandler {
      */
     final Validator validator;
 
+    final BeerJsonRows beerJsonRows;
+
+    final BeerReadModel beerReadModel;
+
+    private static final String DUPLICATE_UPC = "upc : a beer with this upc already exists";
+
+    @Value("${sfg.brewery.bulk.chunk-size:500}")
+    int bulkChunkSize;
+
+    @Value("${sfg.brewery.batch-get.max-keys:100}")
+    int batchGetMaxKeys;
+
+    @Value("${sfg.brewery.search.default-limit:10}")
+    int searchDefaultLimit;
+
+    @Value("${sfg.brewery.search.max-limit:50}")
+    int searchMaxLimit;
+
+    @Value("${sfg.brewery.stream.row-json.enabled:false}")
+    boolean rowJsonEnabled;
+
+    /**
+     * An If-Match header makes the update conditional on the beer's ETag, a stale one answers 412
+     */
     public Mono<ServerResponse> updateBeer(ServerRequest serverRequest) {
 
+        Integer beerId = Integer.valueOf(serverRequest.pathVariable("beerId"));
+        Long expectedVersion = BeerETag.expectedVersion(serverRequest.headers().firstHeader(HttpHeaders.IF_MATCH), beerId);
+
         return serverRequest.bodyToMono(BeerDto.class)
                 .doOnNext(this::validate)
                 .flatMap(beerDto -> {
-                    return beerService.updateBeer(Integer.valueOf(serverRequest.pathVariable("beerId")), beerDto);
+                    return beerService.updateBeer(beerId, beerDto, expectedVersion);
                 })
                 .flatMap(savedBeerDto -> {
 
@@ -44,7 +101,28 @@ public class BeerHandler {
                     }
 
 
-                });
+                })
+                .onErrorResume(OptimisticLockingFailureException.class, e -> ServerResponse.status(HttpStatus.CONFLICT).build())
+                .onErrorResume(PreconditionFailedException.class, e -> ServerResponse.status(HttpStatus.PRECONDITION_FAILED).build())
+                .onErrorResume(DataIntegrityViolationException.class, this::duplicateUpc);
+    }
+
+    public Mono<ServerResponse> adjustInventory(ServerRequest request) {
+
+        Integer beerId = Integer.valueOf(request.pathVariable("beerId"));
+
+        return request.bodyToMono(BeerInventoryAdjustment.class)
+                .switchIfEmpty(Mono.error(new ServerWebInputException("delta is required")))
+                .flatMap(adjustment -> {
+                    if (adjustment.getDelta() == null) {
+                        return Mono.error(new ServerWebInputException("delta is required"));
+                    }
+                    return beerService.adjustInventory(beerId, adjustment.getDelta());
+                })
+                .flatMap(beerDto -> ServerResponse.ok().bodyValue(beerDto))
+                .onErrorResume(NotFoundException.class, e -> ServerResponse.notFound().build())
+                .onErrorResume(InsufficientInventoryException.class, e -> ServerResponse.status(HttpStatus.CONFLICT)
+                        .bodyValue(e.getMessage()));
     }
 
     public Mono<ServerResponse> saveNewBeer(ServerRequest request) {
@@ -55,17 +133,163 @@ public class BeerHandler {
         return beerService.saveNewBeerMono(beerDtoMono).flatMap(beerDto ->
                 ServerResponse.ok()
                         .header("location", BeerRouterConfig.API_V_2_BEER + "/" + beerDto.getId()).build()
-        );
+        ).onErrorResume(DataIntegrityViolationException.class, this::duplicateUpc);
+
+    }
+
+    // the unique index on upc is the only constraint a beer can break, see schema.sql
+    private Mono<ServerResponse> duplicateUpc(DataIntegrityViolationException e) {
+        return ServerResponse.status(HttpStatus.CONFLICT).bodyValue(DUPLICATE_UPC);
+    }
+
+    /**
+     * Accepts a JSON array or NDJSON stream of beers. Items are validated one by one and the valid ones
+     * inserted chunk by chunk, each chunk as one batched statement in its own transaction.
+     */
+    public Mono<ServerResponse> saveNewBeers(ServerRequest request) {
+
+        Flux<BeerBulkResult> results = request.bodyToFlux(BeerDto.class)
+                .index()
+                .buffer(bulkChunkSize)
+                .concatMap(this::saveChunk);
+
+        return ServerResponse.ok()
+                .contentType(jsonOrNdJson(request))
+                .body(results, BeerBulkResult.class);
+    }
+
+    private Flux<BeerBulkResult> saveChunk(List<Tuple2<Long, BeerDto>> chunk) {
+
+        List<BeerBulkResult> results = new ArrayList<>(chunk.size());
+        List<BeerBulkResult> toSave = new ArrayList<>(chunk.size());
+        List<BeerDto> beers = new ArrayList<>(chunk.size());
+
+        for (Tuple2<Long, BeerDto> item : chunk) {
+            BeerBulkResult result = BeerBulkResult.builder().index(item.getT1()).build();
+            Errors errors = validationErrors(item.getT2());
+            if (errors.hasErrors()) {
+                result.setErrors(errors.getFieldErrors().stream()
+                        .map(fieldError -> fieldError.getField() + " : " + fieldError.getDefaultMessage())
+                        .collect(Collectors.toList()));
+            } else {
+                toSave.add(result);
+                beers.add(item.getT2());
+            }
+            results.add(result);
+        }
+
+        return beerService.saveNewBeers(beers)
+                .index()
+                .doOnNext(saved -> toSave.get(saved.getT1().intValue()).setId(saved.getT2().getId()))
+                .onErrorResume(e -> {
+                    log.info("bulk insert of {} beers failed", beers.size(), e);
+                    toSave.forEach(result -> result.setErrors(List.of(String.valueOf(e.getMessage()))));
+                    return Mono.empty();
+                })
+                .thenMany(Flux.fromIterable(results));
+    }
+
+    /**
+     * GET with ids or upcs as comma separated query parameters
+     */
+    public Mono<ServerResponse> batchGetBeers(ServerRequest request) {
+
+        List<String> ids = splitParam(request, "ids");
+        List<String> upcs = splitParam(request, "upcs");
+
+        try {
+            return batchGet(request, BeerBatchGetRequest.builder()
+                    .ids(ids.stream().map(Integer::valueOf).collect(Collectors.toList()))
+                    .upcs(upcs)
+                    .build());
+        } catch (NumberFormatException e) {
+            return Mono.error(new ServerWebInputException("ids must be numeric"));
+        }
+    }
+
+    /**
+     * POST with a {@link BeerBatchGetRequest} body, for key lists too long for a query string
+     */
+    public Mono<ServerResponse> batchGetBeersFromBody(ServerRequest request) {
+
+        return request.bodyToMono(BeerBatchGetRequest.class)
+                .flatMap(batchGetRequest -> batchGet(request, batchGetRequest));
+    }
+
+    private Mono<ServerResponse> batchGet(ServerRequest request, BeerBatchGetRequest batchGetRequest) {
 
+        List<Integer> ids = batchGetRequest.getIds() == null ? List.of() : batchGetRequest.getIds();
+        List<String> upcs = batchGetRequest.getUpcs() == null ? List.of() : batchGetRequest.getUpcs();
+
+        if (ids.isEmpty() == upcs.isEmpty()) {
+            return Mono.error(new ServerWebInputException("Either ids or upcs must be given"));
+        }
+        if (ids.size() + upcs.size() > batchGetMaxKeys) {
+            return Mono.error(new ServerWebInputException("At most " + batchGetMaxKeys + " keys per request"));
+        }
+
+        Boolean showOnHand = Boolean.valueOf(request.queryParam("showInventoryOnHand").orElse("false"));
+        Flux<BeerBatchGetResult> results = ids.isEmpty()
+                ? beerService.getByUpcs(upcs, showOnHand)
+                : beerService.getByIds(ids, showOnHand);
+
+        return ServerResponse.ok()
+                .contentType(jsonOrNdJson(request))
+                .body(results, BeerBatchGetResult.class);
+    }
+
+    /**
+     * Type-ahead search on beer name words and upcs, answered from the in memory index
+     */
+    public Mono<ServerResponse> searchBeers(ServerRequest request) {
+
+        String prefix = request.queryParam("prefix").map(String::trim).orElse("");
+        if (prefix.isEmpty()) {
+            return Mono.error(new ServerWebInputException("prefix must not be blank"));
+        }
+
+        int limit;
+        try {
+            limit = request.queryParam("limit").map(Integer::valueOf).orElse(searchDefaultLimit);
+        } catch (NumberFormatException e) {
+            return Mono.error(new ServerWebInputException("limit must be numeric"));
+        }
+        if (limit < 1 || limit > searchMaxLimit) {
+            return Mono.error(new ServerWebInputException("limit must be between 1 and " + searchMaxLimit));
+        }
+
+        return ServerResponse.ok()
+                .contentType(beerMediaType(request))
+                .body(beerService.searchBeers(prefix, limit), BeerDto.class);
+    }
+
+    private List<String> splitParam(ServerRequest request, String name) {
+        return request.queryParams().getOrDefault(name, List.of()).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private MediaType jsonOrNdJson(ServerRequest request) {
+        return request.headers().accept().stream()
+                .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype) ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON;
     }
 
     public Mono<ServerResponse> getBeerById(ServerRequest request) {
 
         Integer beerId = Integer.valueOf(request.pathVariable("beerId"));
         Boolean showOnHand = Boolean.valueOf(request.queryParam("showInventoryOnHand").orElse("false"));
+        MediaType mediaType = beerMediaType(request);
+        if (!showOnHand && MediaType.APPLICATION_JSON.equals(mediaType)) {
+            return beerService.getByIdAsJson(beerId)
+                    .flatMap(beerJson -> json(request, beerJson))
+                    .switchIfEmpty(ServerResponse.notFound().build());
+        }
+        // inventory moves without the last modified date, so only the ETag, which carries it, can validate
         return beerService.getById(beerId, showOnHand).flatMap(
                 beerDto -> {
-                    return ServerResponse.ok().bodyValue(beerDto);
+                    return beer(request, mediaType, beerDto, !showOnHand);
                 }
         ).switchIfEmpty(ServerResponse.notFound().build());
 
@@ -75,19 +299,93 @@ public class BeerHandler {
     public Mono<ServerResponse> getBeerByUpc(ServerRequest request) {
 
         String upc = request.pathVariable("upc");
-        return beerService.getByUpc(upc).flatMap(
-                beerDto -> {
-                    return ServerResponse.ok().bodyValue(beerDto);
-                }
-        ).switchIfEmpty(ServerResponse.notFound().build());
+        MediaType mediaType = beerMediaType(request);
+        if (!MediaType.APPLICATION_JSON.equals(mediaType)) {
+            return beerService.getByUpc(upc)
+                    .flatMap(beerDto -> beer(request, mediaType, beerDto, true))
+                    .switchIfEmpty(ServerResponse.notFound().build());
+        }
+        return beerService.getByUpcAsJson(upc)
+                .flatMap(beerJson -> json(request, beerJson))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    // the bytes are shared by every hit, wrapping them copies nothing. A client holding the current
+    // version gets a 304 and no bytes at all
+    private Mono<ServerResponse> json(ServerRequest request, BeerJson beerJson) {
+        return conditional(request, beerJson.getETag(), beerJson.getLastModified(), MediaType.APPLICATION_JSON,
+                ok -> ok.body((outputMessage, context) -> outputMessage.writeWith(
+                        Mono.fromSupplier(() -> outputMessage.bufferFactory().wrap(beerJson.getJson())))));
+    }
 
+    private Mono<ServerResponse> beer(ServerRequest request, MediaType mediaType, BeerDto beerDto, boolean withLastModified) {
+        return conditional(request, BeerETag.of(beerDto, mediaType),
+                withLastModified ? BeerETag.lastModified(beerDto) : null, mediaType, ok -> ok.bodyValue(beerDto));
+    }
+
+    private Mono<ServerResponse> conditional(ServerRequest request, String eTag, @Nullable Instant lastModified,
+                                             MediaType mediaType, Function<ServerResponse.BodyBuilder, Mono<ServerResponse>> body) {
+        Mono<ServerResponse> notModified = lastModified == null
+                ? request.checkNotModified(eTag)
+                : request.checkNotModified(lastModified, eTag);
+
+        return notModified.switchIfEmpty(Mono.defer(() -> {
+            ServerResponse.BodyBuilder ok = ServerResponse.ok()
+                    .contentType(mediaType)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .eTag(eTag);
+            if (lastModified != null) {
+                ok.lastModified(lastModified);
+            }
+            return body.apply(ok);
+        }));
+    }
 
+    private MediaType beerMediaType(ServerRequest request) {
+        return BeerRouterConfig.beerMediaType(request.headers().accept());
+    }
+
+    public Mono<ServerResponse> streamBeers(ServerRequest request) {
+
+        String beerName = request.queryParam("beerName").orElse(null);
+        BeerStyleEnum beerStyle;
+        try {
+            beerStyle = request.queryParam("beerStyle").map(BeerStyleEnum::valueOf).orElse(null);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ServerWebInputException("Unknown beer style " + request.queryParam("beerStyle").get()));
+        }
+        Boolean showOnHand = Boolean.valueOf(request.queryParam("showInventoryOnHand").orElse("false"));
+
+        MediaType mediaType = request.headers().accept().stream()
+                .anyMatch(MediaType.TEXT_EVENT_STREAM::isCompatibleWith) ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_NDJSON;
+
+        // rows straight from the database are only worth it when there is no read model to serve the stream
+        if (rowJsonEnabled && !beerReadModel.isServing()) {
+            return ServerResponse.ok()
+                    .contentType(mediaType)
+                    .body(rowJson(beerName, beerStyle, showOnHand, mediaType));
+        }
+
+        return ServerResponse.ok()
+                .contentType(mediaType)
+                .body(beerService.streamBeers(beerName, beerStyle, showOnHand), BeerDto.class);
+    }
+
+    // framed and flushed per beer the way the NDJSON and SSE encoders do it
+    private BodyInserter<Void, ReactiveHttpOutputMessage> rowJson(String beerName, BeerStyleEnum beerStyle,
+                                                                  boolean showOnHand, MediaType mediaType) {
+        boolean sse = MediaType.TEXT_EVENT_STREAM.equals(mediaType);
+        byte[] prefix = (sse ? "data:" : "").getBytes(StandardCharsets.UTF_8);
+        byte[] suffix = (sse ? "\n\n" : "\n").getBytes(StandardCharsets.UTF_8);
+
+        return (outputMessage, context) -> outputMessage.writeAndFlushWith(beerJsonRows
+                .stream(beerName, beerStyle, showOnHand, outputMessage.bufferFactory(), prefix, suffix)
+                .map(Mono::just));
     }
 
     private void validate(BeerDto beerDto) {
         log.debug("Validation beer with name {}", beerDto.getBeerName());
-        Errors errors = new BeanPropertyBindingResult(beerDto, "beerDto");
-        validator.validate(beerDto, errors);
+        Errors errors = validationErrors(beerDto);
         if (errors.hasErrors()) {
             log.debug("errors found {}", errors.toString());
             throw new ServerWebInputException(errors.toString());
@@ -95,6 +393,12 @@ public class BeerHandler {
 
     }
 
+    private Errors validationErrors(BeerDto beerDto) {
+        Errors errors = new BeanPropertyBindingResult(beerDto, "beerDto");
+        validator.validate(beerDto, errors);
+        return errors;
+    }
+
     public Mono<ServerResponse> deleteReactiveBeer(ServerRequest serverRequest) {
 
         return beerService.deleteReactiveBeer(Integer.valueOf(serverRequest.pathVariable("beerId")))
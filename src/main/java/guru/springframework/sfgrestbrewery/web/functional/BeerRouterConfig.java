@@ -1,12 +1,18 @@
 package guru.springframework.sfgrestbrewery.web.functional;
 
+import guru.springframework.sfgrestbrewery.config.BinaryCodecsConfig;
+import guru.springframework.sfgrestbrewery.web.protobuf.BeerProtobuf;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.springframework.web.reactive.function.server.RequestPredicates.accept;
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 
 @Configuration
@@ -15,22 +21,59 @@ public class BeerRouterConfig {
     public static final String API_V_2_BEER_UPC = "/api/v2/beerUpc/{upc}";
     public static final String API_V_2_BEER_ID = "/api/v2/beer/{beerId}";
     public static final String API_V_2_BEER = "/api/v2/beer";
+    public static final String API_V_2_BEER_BULK = "/api/v2/beer/bulk";
+    public static final String API_V_2_BEER_BATCH_GET = "/api/v2/beer:batchGet";
+    public static final String API_V_2_BEER_SEARCH = "/api/v2/beer/search";
+    public static final String API_V_2_BEER_INVENTORY = "/api/v2/beer/{beerId}/inventory";
+
+    /**
+     * What beers and beer lists can be served as, JSON first so it is what a client accepting anything gets
+     */
+    public static final List<MediaType> BEER_MEDIA_TYPES = List.of(MediaType.APPLICATION_JSON, BeerProtobuf.MEDIA_TYPE,
+            MediaType.APPLICATION_CBOR, BinaryCodecsConfig.APPLICATION_SMILE);
+
+    /**
+     * The first of the media types a beer can be served as that the client takes, in the client's order of
+     * preference. JSON when it takes anything.
+     */
+    public static MediaType beerMediaType(List<MediaType> accept) {
+        List<MediaType> accepted = new ArrayList<>(accept);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType acceptable : accepted) {
+            for (MediaType mediaType : BEER_MEDIA_TYPES) {
+                if (acceptable.isCompatibleWith(mediaType)) {
+                    return mediaType;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
 
     @Bean
     public RouterFunction<ServerResponse> beerRoutes(BeerHandler beerHandler) {
 
+        MediaType[] beerMediaTypes = BEER_MEDIA_TYPES.toArray(MediaType[]::new);
+
         return route()
+                .GET(API_V_2_BEER,
+                        accept(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM),
+                        beerHandler::streamBeers)
+                // before the id route, which would otherwise take "search" as a beer id
+                .GET(API_V_2_BEER_SEARCH, beerHandler::searchBeers)
                 .GET(API_V_2_BEER_ID,
-                        accept(MediaType.APPLICATION_JSON),
+                        accept(beerMediaTypes),
                         beerHandler::getBeerById)
-                .GET(API_V_2_BEER_UPC, accept(MediaType.APPLICATION_JSON), beerHandler::getBeerByUpc)
-                .POST(API_V_2_BEER, accept(MediaType.APPLICATION_JSON), beerHandler::saveNewBeer)
-                .POST(API_V_2_BEER, accept(MediaType.APPLICATION_JSON), beerHandler::saveNewBeer)
-                .PUT(API_V_2_BEER_ID, accept(MediaType.APPLICATION_JSON), beerHandler::updateBeer)
+                .GET(API_V_2_BEER_BATCH_GET, beerHandler::batchGetBeers)
+                .POST(API_V_2_BEER_BATCH_GET, contentType(MediaType.APPLICATION_JSON), beerHandler::batchGetBeersFromBody)
+                .GET(API_V_2_BEER_UPC, accept(beerMediaTypes), beerHandler::getBeerByUpc)
+                .POST(API_V_2_BEER, accept(beerMediaTypes), beerHandler::saveNewBeer)
+                .POST(API_V_2_BEER, accept(beerMediaTypes), beerHandler::saveNewBeer)
+                .POST(API_V_2_BEER_BULK, contentType(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON), beerHandler::saveNewBeers)
+                .POST(API_V_2_BEER_INVENTORY, contentType(MediaType.APPLICATION_JSON), beerHandler::adjustInventory)
+                .PUT(API_V_2_BEER_ID, accept(beerMediaTypes), beerHandler::updateBeer)
                 .DELETE(API_V_2_BEER_ID, accept(MediaType.APPLICATION_JSON), beerHandler::deleteReactiveBeer)
                 .build();
 
 
     }
-
 }
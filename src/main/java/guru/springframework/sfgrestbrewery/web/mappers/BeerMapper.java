@@ -12,9 +12,13 @@ import org.mapstruct.Mapping;
 public interface BeerMapper {
 
     @Mapping(target="quantityOnHand",ignore=true)
+    @Mapping(source="lastModifiedDate",target="lastUpdatedDate")
     BeerDto beerToBeerDto(Beer beer);
 
+    @Mapping(source="lastModifiedDate",target="lastUpdatedDate")
     BeerDto beerToBeerDtoWithInventory(Beer beer);
 
     Beer beerDtoToBeer(BeerDto dto);
+
+    BeerDto copy(BeerDto dto);
 }
@@ -13,9 +13,8 @@ import java.time.ZoneOffset;
 public class DateMapper {
     public OffsetDateTime asOffsetDateTime(Timestamp ts){
         if (ts != null){
-            return OffsetDateTime.of(ts.toLocalDateTime().getYear(), ts.toLocalDateTime().getMonthValue(),
-                    ts.toLocalDateTime().getDayOfMonth(), ts.toLocalDateTime().getHour(), ts.toLocalDateTime().getMinute(),
-                    ts.toLocalDateTime().getSecond(), ts.toLocalDateTime().getNano(), ZoneOffset.UTC);
+            // one conversion instead of one per field, see DateMapperBenchmark in src/jmh/baseline
+            return ts.toLocalDateTime().atOffset(ZoneOffset.UTC);
         } else {
             return null;
         }
@@ -0,0 +1,22 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Body of a batch get, either beer ids or upcs
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerBatchGetRequest {
+
+    private List<Integer> ids;
+
+    private List<String> upcs;
+}
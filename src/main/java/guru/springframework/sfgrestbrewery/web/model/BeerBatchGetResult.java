@@ -0,0 +1,22 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One requested id or upc of a batch get. Beer is null when nothing was found for the key.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerBatchGetResult {
+
+    private String key;
+
+    private boolean found;
+
+    private BeerDto beer;
+}
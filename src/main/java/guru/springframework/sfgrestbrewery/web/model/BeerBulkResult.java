@@ -0,0 +1,24 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of one item of a bulk create, in the order the items were sent
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerBulkResult {
+
+    private long index;
+
+    private Integer id;
+
+    private List<String> errors;
+}
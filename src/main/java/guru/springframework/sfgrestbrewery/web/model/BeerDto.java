@@ -1,5 +1,6 @@
 package guru.springframework.sfgrestbrewery.web.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -24,6 +25,12 @@ public class BeerDto {
     @Null
     private Integer id;
 
+    /**
+     * Travels in the ETag header rather than the body, see BeerETag
+     */
+    @JsonIgnore
+    private Long version;
+
     @NotBlank
     private String beerName;
 
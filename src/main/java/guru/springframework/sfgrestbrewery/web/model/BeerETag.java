@@ -0,0 +1,96 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import org.springframework.http.MediaType;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Strong validators for beer responses. A beer's ETag is its id and version, which every write bumps, plus
+ * the quantity on hand when that is part of the body since write-behind inventory doesn't bump the version.
+ * A page's ETag folds in the ETags of its beers, its position and its total.
+ */
+public final class BeerETag {
+
+    // matches nothing a beer can carry, so a malformed If-Match always fails
+    public static final long NO_VERSION = -1L;
+
+    private BeerETag() {
+    }
+
+    public static String of(BeerDto beerDto) {
+        StringBuilder eTag = new StringBuilder("\"").append(beerDto.getId()).append('-').append(versionOf(beerDto));
+        if (beerDto.getQuantityOnHand() != null) {
+            eTag.append("-q").append(beerDto.getQuantityOnHand());
+        }
+        return eTag.append('"').toString();
+    }
+
+    /**
+     * A strong ETag names one representation, so the binary encodings of a beer each get their own.
+     */
+    public static String of(BeerDto beerDto, MediaType mediaType) {
+        return forMediaType(of(beerDto), mediaType);
+    }
+
+    public static String of(BeerPagedList page, MediaType mediaType) {
+        return forMediaType(of(page), mediaType);
+    }
+
+    public static String of(BeerPagedList page) {
+        long hash = 1125899906842597L;
+        for (BeerDto beerDto : page.getContent()) {
+            hash = 31 * hash + of(beerDto).hashCode();
+        }
+        hash = 31 * hash + page.getNumber();
+        hash = 31 * hash + page.getSize();
+        hash = 31 * hash + Long.hashCode(page.getTotalElements());
+        hash = 31 * hash + (page.getNextCursor() == null ? 0 : page.getNextCursor().hashCode());
+        return "\"p" + Long.toHexString(hash) + '"';
+    }
+
+    /**
+     * Null when the beer carries neither date, the header is left out then.
+     */
+    public static Instant lastModified(BeerDto beerDto) {
+        LocalDateTime lastModified = beerDto.getLastUpdatedDate() != null ? beerDto.getLastUpdatedDate()
+                : beerDto.getCreatedDate();
+        return lastModified == null ? null : lastModified.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    /**
+     * The version an If-Match header asks for on the given beer. Null for a missing header or "*", which
+     * match whatever version there is, and NO_VERSION for anything that isn't one of this beer's ETags.
+     */
+    public static Long expectedVersion(String ifMatch, Integer beerId) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        // If-Match compares strongly, so a weak ETag never matches
+        String eTag = ifMatch.trim();
+        if (eTag.length() < 2 || eTag.charAt(0) != '"' || eTag.charAt(eTag.length() - 1) != '"') {
+            return NO_VERSION;
+        }
+        String[] parts = eTag.substring(1, eTag.length() - 1).split("-");
+        if (parts.length < 2 || !parts[0].equals(String.valueOf(beerId))) {
+            return NO_VERSION;
+        }
+        try {
+            return Long.valueOf(parts[1]);
+        } catch (NumberFormatException e) {
+            return NO_VERSION;
+        }
+    }
+
+    private static String forMediaType(String eTag, MediaType mediaType) {
+        if (MediaType.APPLICATION_JSON.equalsTypeAndSubtype(mediaType)) {
+            return eTag;
+        }
+        return eTag.substring(0, eTag.length() - 1) + '-' + mediaType.getSubtype() + '"';
+    }
+
+    private static long versionOf(BeerDto beerDto) {
+        return beerDto.getVersion() == null ? 0 : beerDto.getVersion();
+    }
+}
@@ -0,0 +1,21 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Relative change to a beer's quantity on hand, negative to take stock out.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerInventoryAdjustment {
+
+    @NotNull
+    private Integer delta;
+}
@@ -0,0 +1,24 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * A beer already encoded as JSON, with the validators of the BeerDto it was encoded from.
+ */
+@Getter
+public class BeerJson {
+
+    private final byte[] json;
+
+    private final String eTag;
+
+    private final Instant lastModified;
+
+    public BeerJson(byte[] json, BeerDto beerDto) {
+        this.json = json;
+        this.eTag = BeerETag.of(beerDto);
+        this.lastModified = BeerETag.lastModified(beerDto);
+    }
+}
@@ -18,6 +18,11 @@ public class BeerPagedList extends PageImpl<BeerDto> implements Serializable {
 
     static final long serialVersionUID = 1114715135625836949L;
 
+    /**
+     * Keyset cursor for the page after this one, null on the last page
+     */
+    private String nextCursor;
+
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     public BeerPagedList(@JsonProperty("content") List<BeerDto> content,
                          @JsonProperty("number") int number,
@@ -28,16 +33,27 @@ public class BeerPagedList extends PageImpl<BeerDto> implements Serializable {
                          @JsonProperty("totalPages") int totalPages,
                          @JsonProperty("sort") JsonNode sort,
                          @JsonProperty("first") boolean first,
-                         @JsonProperty("numberOfElements") int numberOfElements) {
+                         @JsonProperty("numberOfElements") int numberOfElements,
+                         @JsonProperty("nextCursor") String nextCursor) {
 
         super(content, PageRequest.of(number, size), totalElements);
+        this.nextCursor = nextCursor;
     }
 
     public BeerPagedList(List<BeerDto> content, Pageable pageable, long total) {
         super(content, pageable, total);
     }
 
+    public BeerPagedList(List<BeerDto> content, Pageable pageable, long total, String nextCursor) {
+        super(content, pageable, total);
+        this.nextCursor = nextCursor;
+    }
+
     public BeerPagedList(List<BeerDto> content) {
         super(content);
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
 }
@@ -0,0 +1,194 @@
+package guru.springframework.sfgrestbrewery.web.protobuf;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BeerDto and BeerPagedList in the protobuf wire format of src/main/proto/beer.proto, written by hand so
+ * the api needs neither protobuf-java nor generated message classes. Any protobuf client generated from the
+ * schema reads and writes the same bytes, BeerProtobufTest compares them to what protoc encodes.
+ */
+public final class BeerProtobuf {
+
+    public static final MediaType MEDIA_TYPE = new MediaType("application", "x-protobuf");
+
+    // Beer
+    private static final int ID = 1;
+    private static final int BEER_NAME = 2;
+    private static final int BEER_STYLE = 3;
+    private static final int UPC = 4;
+    private static final int PRICE = 5;
+    private static final int QUANTITY_ON_HAND = 6;
+    private static final int CREATED_DATE = 7;
+    private static final int LAST_UPDATED_DATE = 8;
+
+    // BeerPage
+    private static final int CONTENT = 1;
+    private static final int NUMBER = 2;
+    private static final int SIZE = 3;
+    private static final int TOTAL_ELEMENTS = 4;
+    private static final int NEXT_CURSOR = 5;
+
+    private static final int BEER_SIZE = 128;
+
+    private BeerProtobuf() {
+    }
+
+    public static boolean supports(Class<?> type) {
+        return BeerDto.class.isAssignableFrom(type) || BeerPagedList.class.isAssignableFrom(type);
+    }
+
+    public static byte[] encode(Object value) {
+        ProtobufWriter writer = new ProtobufWriter(BEER_SIZE);
+        write(value, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * One element of a stream, the message prefixed with its length.
+     */
+    public static byte[] encodeDelimited(Object value) {
+        ProtobufWriter message = new ProtobufWriter(BEER_SIZE);
+        write(value, message);
+        ProtobufWriter writer = new ProtobufWriter(BEER_SIZE + 2);
+        writer.delimited(message);
+        return writer.toByteArray();
+    }
+
+    public static <T> T decode(byte[] bytes, Class<T> type) {
+        return type.cast(read(new ProtobufReader(bytes), type));
+    }
+
+    public static <T> List<T> decodeDelimited(byte[] bytes, Class<T> type) {
+        ProtobufReader reader = new ProtobufReader(bytes);
+        List<T> values = new ArrayList<>();
+        while (reader.hasMore()) {
+            values.add(type.cast(read(reader.delimited(), type)));
+        }
+        return values;
+    }
+
+    private static void write(Object value, ProtobufWriter writer) {
+        if (value instanceof BeerPagedList) {
+            writePage((BeerPagedList) value, writer);
+        } else if (value instanceof BeerDto) {
+            writeBeer((BeerDto) value, writer);
+        } else {
+            throw new IllegalArgumentException("No protobuf encoding for " + value.getClass().getName());
+        }
+    }
+
+    private static Object read(ProtobufReader reader, Class<?> type) {
+        if (BeerPagedList.class.isAssignableFrom(type)) {
+            return readPage(reader);
+        } else if (BeerDto.class.isAssignableFrom(type)) {
+            return readBeer(reader);
+        }
+        throw new IllegalArgumentException("No protobuf encoding for " + type.getName());
+    }
+
+    private static void writeBeer(BeerDto beerDto, ProtobufWriter writer) {
+        writer.int32(ID, beerDto.getId());
+        writer.string(BEER_NAME, beerDto.getBeerName());
+        writer.string(BEER_STYLE, beerDto.getBeerStyle());
+        writer.string(UPC, beerDto.getUpc());
+        writer.string(PRICE, beerDto.getPrice() == null ? null : beerDto.getPrice().toPlainString());
+        writer.int32(QUANTITY_ON_HAND, beerDto.getQuantityOnHand());
+        writer.string(CREATED_DATE, format(beerDto.getCreatedDate()));
+        writer.string(LAST_UPDATED_DATE, format(beerDto.getLastUpdatedDate()));
+    }
+
+    private static BeerDto readBeer(ProtobufReader reader) {
+        BeerDto beerDto = new BeerDto();
+        while (reader.hasMore()) {
+            int tag = reader.tag();
+            switch (ProtobufReader.field(tag)) {
+                case ID:
+                    beerDto.setId(reader.int32(tag));
+                    break;
+                case BEER_NAME:
+                    beerDto.setBeerName(reader.string(tag));
+                    break;
+                case BEER_STYLE:
+                    beerDto.setBeerStyle(reader.string(tag));
+                    break;
+                case UPC:
+                    beerDto.setUpc(reader.string(tag));
+                    break;
+                case PRICE:
+                    beerDto.setPrice(new BigDecimal(reader.string(tag)));
+                    break;
+                case QUANTITY_ON_HAND:
+                    beerDto.setQuantityOnHand(reader.int32(tag));
+                    break;
+                case CREATED_DATE:
+                    beerDto.setCreatedDate(LocalDateTime.parse(reader.string(tag)));
+                    break;
+                case LAST_UPDATED_DATE:
+                    beerDto.setLastUpdatedDate(LocalDateTime.parse(reader.string(tag)));
+                    break;
+                default:
+                    reader.skip(tag);
+            }
+        }
+        return beerDto;
+    }
+
+    private static void writePage(BeerPagedList page, ProtobufWriter writer) {
+        ProtobufWriter beer = new ProtobufWriter(BEER_SIZE);
+        for (BeerDto beerDto : page.getContent()) {
+            beer.reset();
+            writeBeer(beerDto, beer);
+            writer.message(CONTENT, beer);
+        }
+        writer.int32(NUMBER, page.getNumber());
+        writer.int32(SIZE, page.getSize());
+        writer.int64(TOTAL_ELEMENTS, page.getTotalElements());
+        writer.string(NEXT_CURSOR, page.getNextCursor());
+    }
+
+    private static BeerPagedList readPage(ProtobufReader reader) {
+        List<BeerDto> content = new ArrayList<>();
+        int number = 0;
+        int size = 0;
+        long totalElements = 0;
+        String nextCursor = null;
+        while (reader.hasMore()) {
+            int tag = reader.tag();
+            switch (ProtobufReader.field(tag)) {
+                case CONTENT:
+                    content.add(readBeer(reader.message(tag)));
+                    break;
+                case NUMBER:
+                    number = reader.int32(tag);
+                    break;
+                case SIZE:
+                    size = reader.int32(tag);
+                    break;
+                case TOTAL_ELEMENTS:
+                    totalElements = reader.int64(tag);
+                    break;
+                case NEXT_CURSOR:
+                    nextCursor = reader.string(tag);
+                    break;
+                default:
+                    reader.skip(tag);
+            }
+        }
+        // an unpaged list reports its own length as size, which is 0 when it's empty
+        return size > 0 ? new BeerPagedList(content, PageRequest.of(number, size), totalElements, nextCursor)
+                : new BeerPagedList(content);
+    }
+
+    private static String format(LocalDateTime dateTime) {
+        return dateTime == null ? null : DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime);
+    }
+}
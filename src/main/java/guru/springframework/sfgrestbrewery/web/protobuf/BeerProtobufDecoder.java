@@ -0,0 +1,64 @@
+package guru.springframework.sfgrestbrewery.web.protobuf;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.DateTimeException;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Reads what BeerProtobufEncoder writes. Bodies are joined before parsing, up to the same 256K the other
+ * decoders buffer by default.
+ */
+public class BeerProtobufDecoder extends AbstractDecoder<Object> {
+
+    private static final int MAX_IN_MEMORY_SIZE = 256 * 1024;
+
+    public BeerProtobufDecoder() {
+        super(BeerProtobuf.MEDIA_TYPE);
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, @Nullable MimeType mimeType) {
+        return BeerProtobuf.supports(elementType.toClass()) && super.canDecode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<Object> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                               @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+        return join(inputStream).flatMapIterable(bytes -> parse(() ->
+                BeerProtobuf.decodeDelimited(bytes, elementType.toClass())));
+    }
+
+    @Override
+    public Mono<Object> decodeToMono(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                                     @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+        return join(inputStream).map(bytes -> parse(() -> BeerProtobuf.decode(bytes, elementType.toClass())));
+    }
+
+    private static Mono<byte[]> join(Publisher<DataBuffer> inputStream) {
+        return DataBufferUtils.join(inputStream, MAX_IN_MEMORY_SIZE).map(buffer -> {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            DataBufferUtils.release(buffer);
+            return bytes;
+        });
+    }
+
+    private static <T> T parse(Supplier<T> parser) {
+        try {
+            return parser.get();
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new DecodingException("Malformed protobuf beer: " + e.getMessage(), e);
+        }
+    }
+}
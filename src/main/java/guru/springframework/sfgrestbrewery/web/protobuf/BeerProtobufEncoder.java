@@ -0,0 +1,43 @@
+package guru.springframework.sfgrestbrewery.web.protobuf;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Writes beers and beer pages as application/x-protobuf. A single value is one message, a stream is a
+ * sequence of length prefixed messages, the same framing protobuf-java's writeDelimitedTo uses.
+ */
+public class BeerProtobufEncoder extends AbstractEncoder<Object> {
+
+    public BeerProtobufEncoder() {
+        super(BeerProtobuf.MEDIA_TYPE);
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, @Nullable MimeType mimeType) {
+        return BeerProtobuf.supports(elementType.toClass()) && super.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+                                   @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+        boolean delimited = !(inputStream instanceof Mono);
+        return Flux.from(inputStream).map(value -> bufferFactory.wrap(delimited
+                ? BeerProtobuf.encodeDelimited(value) : BeerProtobuf.encode(value)));
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+        return bufferFactory.wrap(BeerProtobuf.encode(value));
+    }
+}
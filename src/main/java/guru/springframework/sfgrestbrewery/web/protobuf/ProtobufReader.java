@@ -0,0 +1,130 @@
+package guru.springframework.sfgrestbrewery.web.protobuf;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads what ProtobufWriter writes, and skips any field it doesn't know so newer senders stay readable.
+ * A known field is read with the tag it came with, and fails unless the tag has the wire type the schema
+ * gives the field. Malformed input fails with IllegalArgumentException.
+ */
+final class ProtobufReader {
+
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    ProtobufReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    private ProtobufReader(byte[] buffer, int position, int limit) {
+        this.buffer = buffer;
+        this.position = position;
+        this.limit = limit;
+    }
+
+    boolean hasMore() {
+        return position < limit;
+    }
+
+    int tag() {
+        return (int) varint();
+    }
+
+    static int field(int tag) {
+        return tag >>> 3;
+    }
+
+    int int32(int tag) {
+        expect(tag, ProtobufWriter.VARINT);
+        return (int) varint();
+    }
+
+    long int64(int tag) {
+        expect(tag, ProtobufWriter.VARINT);
+        return varint();
+    }
+
+    String string(int tag) {
+        expect(tag, ProtobufWriter.LENGTH_DELIMITED);
+        int length = length();
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    ProtobufReader message(int tag) {
+        expect(tag, ProtobufWriter.LENGTH_DELIMITED);
+        return message();
+    }
+
+    /**
+     * The next element of a stream of length prefixed messages.
+     */
+    ProtobufReader delimited() {
+        return message();
+    }
+
+    private ProtobufReader message() {
+        int length = length();
+        ProtobufReader message = new ProtobufReader(buffer, position, position + length);
+        position += length;
+        return message;
+    }
+
+    void skip(int tag) {
+        switch (tag & 0x7) {
+            case ProtobufWriter.VARINT:
+                varint();
+                break;
+            case ProtobufWriter.FIXED_64:
+                advance(8);
+                break;
+            case ProtobufWriter.LENGTH_DELIMITED:
+                advance(length());
+                break;
+            case ProtobufWriter.FIXED_32:
+                advance(4);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported wire type " + (tag & 0x7));
+        }
+    }
+
+    private static void expect(int tag, int wireType) {
+        if ((tag & 0x7) != wireType) {
+            throw new IllegalArgumentException("Field " + field(tag) + " has wire type " + (tag & 0x7)
+                    + ", expected " + wireType);
+        }
+    }
+
+    private int length() {
+        long length = varint();
+        if (length < 0 || length > limit - position) {
+            throw new IllegalArgumentException("Length " + length + " runs past the end of the message");
+        }
+        return (int) length;
+    }
+
+    private void advance(int length) {
+        if (length > limit - position) {
+            throw new IllegalArgumentException("Field runs past the end of the message");
+        }
+        position += length;
+    }
+
+    private long varint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= limit) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
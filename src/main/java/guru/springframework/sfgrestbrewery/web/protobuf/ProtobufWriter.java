@@ -0,0 +1,93 @@
+package guru.springframework.sfgrestbrewery.web.protobuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Just enough of the protobuf wire format for the beer messages: varints and length delimited fields.
+ */
+final class ProtobufWriter {
+
+    static final int VARINT = 0;
+    static final int FIXED_64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+    static final int FIXED_32 = 5;
+
+    private byte[] buffer;
+    private int position;
+
+    ProtobufWriter(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    void int32(int field, Integer value) {
+        if (value != null) {
+            tag(field, VARINT);
+            // negative int32 is sign extended to ten bytes, as protoc does it
+            varint(value.longValue());
+        }
+    }
+
+    void int64(int field, long value) {
+        tag(field, VARINT);
+        varint(value);
+    }
+
+    void string(int field, String value) {
+        if (value != null) {
+            bytes(field, value.getBytes(StandardCharsets.UTF_8), 0, -1);
+        }
+    }
+
+    void message(int field, ProtobufWriter message) {
+        bytes(field, message.buffer, 0, message.position);
+    }
+
+    /**
+     * A message as one element of a stream, prefixed with its length instead of a tag.
+     */
+    void delimited(ProtobufWriter message) {
+        varint(message.position);
+        write(message.buffer, 0, message.position);
+    }
+
+    void reset() {
+        position = 0;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void bytes(int field, byte[] bytes, int offset, int length) {
+        int size = length < 0 ? bytes.length : length;
+        tag(field, LENGTH_DELIMITED);
+        varint(size);
+        write(bytes, offset, size);
+    }
+
+    private void tag(int field, int wireType) {
+        varint((field << 3) | wireType);
+    }
+
+    private void varint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void write(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void ensure(int length) {
+        if (position + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+        }
+    }
+}
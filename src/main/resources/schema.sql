@@ -9,4 +9,12 @@ CREATE TABLE if NOT EXISTS beer
     price          decimal,
     created_date   timestamp,
     last_modified_date timestamp
-);
\ No newline at end of file
+);
+
+-- findByUpc / findAllByUpcIn, and upc is a business key
+CREATE UNIQUE INDEX if NOT EXISTS beer_upc_uidx ON beer (upc);
+
+-- listBeers filters and keyset paging, id last so the (sort key, id) order comes straight from the index
+CREATE INDEX if NOT EXISTS beer_name_idx ON beer (beer_name, id);
+CREATE INDEX if NOT EXISTS beer_style_idx ON beer (beer_style, id);
+CREATE INDEX if NOT EXISTS beer_price_idx ON beer (price, id);
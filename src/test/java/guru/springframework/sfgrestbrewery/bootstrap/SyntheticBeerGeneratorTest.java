@@ -0,0 +1,63 @@
+package guru.springframework.sfgrestbrewery.bootstrap;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SyntheticBeerGeneratorTest {
+
+    SyntheticBeerGenerator generator = new SyntheticBeerGenerator(mock(BeerRepository.class), 2500, 1000, 4, 42);
+
+    @Test
+    void upcsAreUniqueAndNeverClashWithTheLoadedBeers() {
+
+        Set<String> upcs = LongStream.range(0, 1_000_000)
+                .mapToObj(SyntheticBeerGenerator::upc)
+                .collect(Collectors.toSet());
+
+        assertThat(upcs).hasSize(1_000_000);
+        assertThat(upcs).allMatch(upc -> upc.length() == 13);
+
+        Set<String> loaded = new HashSet<>();
+        for (int i = 1; i <= 30; i++) {
+            loaded.add((String) ReflectionTestUtils.getField(BeerLoader.class, "BEER_" + i + "_UPC"));
+        }
+        assertThat(loaded).doesNotContainAnyElementsOf(upcs);
+    }
+
+    @Test
+    void chunksAreSizedAndRepeatable() {
+
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(generator.chunk(0, now)).hasSize(1000);
+        assertThat(generator.chunk(2, now)).hasSize(500);
+        assertThat(generator.chunk(1, now)).isEqualTo(generator.chunk(1, now));
+    }
+
+    @Test
+    void beersLookRealistic() {
+
+        List<Beer> beers = generator.chunk(0, LocalDateTime.now());
+
+        assertThat(beers).allSatisfy(beer -> {
+            assertThat(beer.getBeerName()).isNotBlank();
+            assertThat(beer.getBeerStyle()).isNotNull();
+            assertThat(beer.getPrice()).isGreaterThan(BigDecimal.ZERO);
+            assertThat(beer.getQuantityOnHand()).isBetween(0, 4999);
+        });
+        assertThat(beers.stream().map(Beer::getBeerStyle).distinct().count()).isGreaterThan(5);
+    }
+}
@@ -0,0 +1,173 @@
+package guru.springframework.sfgrestbrewery.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import guru.springframework.sfgrestbrewery.web.protobuf.BeerProtobuf;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+class BinaryCodecsConfigTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Test
+    void beerIsNegotiatedAsProtobufWithItsOwnETag() {
+
+        EntityExchangeResult<BeerDto> json = webTestClient.get().uri("/api/v2/beer/{beerId}", 6)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(BeerDto.class).returnResult();
+
+        EntityExchangeResult<byte[]> protobuf = webTestClient.get().uri("/api/v2/beer/{beerId}", 6)
+                .accept(BeerProtobuf.MEDIA_TYPE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(BeerProtobuf.MEDIA_TYPE)
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectBody().returnResult();
+
+        assertThat(BeerProtobuf.decode(protobuf.getResponseBody(), BeerDto.class)).isEqualTo(json.getResponseBody());
+        assertThat(protobuf.getResponseBody().length).isLessThan(json.getResponseBodyContent().length);
+
+        String eTag = protobuf.getResponseHeaders().getETag();
+        assertThat(eTag).isNotEqualTo(json.getResponseHeaders().getETag());
+        webTestClient.get().uri("/api/v2/beer/{beerId}", 6)
+                .accept(BeerProtobuf.MEDIA_TYPE)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void beerIsSavedFromAProtobufBody() {
+
+        BeerDto beer = BeerDto.builder()
+                .beerName("Protobuf Porter")
+                .beerStyle("PORTER")
+                .upc("pb-1")
+                .build();
+
+        String location = webTestClient.post().uri("/api/v2/beer")
+                .contentType(BeerProtobuf.MEDIA_TYPE)
+                .bodyValue(BeerProtobuf.encode(beer))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Void.class).getResponseHeaders().getFirst("location");
+
+        webTestClient.get().uri(location)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectBody(BeerDto.class)
+                .value(saved -> assertThat(saved.getBeerName()).isEqualTo("Protobuf Porter"));
+    }
+
+    @Test
+    void pageIsNegotiatedAsProtobuf() {
+
+        byte[] page = webTestClient.get().uri("/api/v1/beer?pageSize=5")
+                .accept(BeerProtobuf.MEDIA_TYPE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody();
+
+        BeerPagedList decoded = BeerProtobuf.decode(page, BeerPagedList.class);
+        assertThat(decoded.getContent()).hasSize(5);
+        assertThat(decoded.getTotalElements()).isGreaterThanOrEqualTo(30);
+    }
+
+    @Test
+    void pageIsNegotiatedAsCborAndSmileWithTheirOwnETags() throws IOException {
+
+        EntityExchangeResult<BeerPagedList> json = webTestClient.get().uri("/api/v1/beer?pageSize=5")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectBody(BeerPagedList.class).returnResult();
+
+        EntityExchangeResult<byte[]> cbor = webTestClient.get().uri("/api/v1/beer?pageSize=5")
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectBody().returnResult();
+        EntityExchangeResult<byte[]> smile = webTestClient.get().uri("/api/v1/beer?pageSize=5")
+                .accept(BinaryCodecsConfig.APPLICATION_SMILE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(BinaryCodecsConfig.APPLICATION_SMILE)
+                .expectBody().returnResult();
+
+        BeerPagedList fromCbor = objectMapperBuilder.factory(new CBORFactory()).build()
+                .readValue(cbor.getResponseBody(), BeerPagedList.class);
+        BeerPagedList fromSmile = objectMapperBuilder.factory(new SmileFactory()).build()
+                .readValue(smile.getResponseBody(), BeerPagedList.class);
+        assertThat(fromCbor.getContent()).hasSize(5).isEqualTo(json.getResponseBody().getContent());
+        assertThat(fromSmile.getContent()).isEqualTo(json.getResponseBody().getContent());
+        assertThat(fromCbor.getTotalElements()).isEqualTo(json.getResponseBody().getTotalElements());
+
+        String cborETag = cbor.getResponseHeaders().getETag();
+        assertThat(List.of(json.getResponseHeaders().getETag(), cborETag, smile.getResponseHeaders().getETag()))
+                .doesNotHaveDuplicates();
+        webTestClient.get().uri("/api/v1/beer?pageSize=5")
+                .accept(MediaType.APPLICATION_CBOR)
+                .ifNoneMatch(cborETag)
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void beerIsNegotiatedAsCborAndSmile() throws IOException {
+
+        BeerDto json = webTestClient.get().uri("/api/v2/beer/{beerId}", 6)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectBody(BeerDto.class).returnResult().getResponseBody();
+
+        byte[] cbor = webTestClient.get().uri("/api/v2/beer/{beerId}", 6)
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectBody().returnResult().getResponseBody();
+        byte[] smile = webTestClient.get().uri("/api/v2/beer/{beerId}", 6)
+                .accept(BinaryCodecsConfig.APPLICATION_SMILE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(BinaryCodecsConfig.APPLICATION_SMILE)
+                .expectBody().returnResult().getResponseBody();
+
+        assertThat(objectMapperBuilder.factory(new CBORFactory()).build().readValue(cbor, BeerDto.class)).isEqualTo(json);
+        assertThat(objectMapperBuilder.factory(new SmileFactory()).build().readValue(smile, BeerDto.class)).isEqualTo(json);
+    }
+
+    @Test
+    void jsonIsWhatAClientTakingAnythingGets() {
+
+        webTestClient.get().uri("/api/v2/beer/{beerId}", 6)
+                .accept(MediaType.ALL)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON);
+    }
+}
@@ -0,0 +1,67 @@
+package guru.springframework.sfgrestbrewery.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureWebTestClient
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.r2dbc.pool.initial-size=1",
+        "spring.r2dbc.pool.max-size=1",
+        "spring.r2dbc.pool.max-acquire-time=200ms"
+})
+class ConnectionPoolSaturationTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    ConnectionFactory connectionFactory;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    Connection held;
+
+    @AfterEach
+    void tearDown() {
+        if (held != null) {
+            Mono.from(held.close()).block();
+        }
+    }
+
+    @Test
+    void requestsFailFastWith503WhileThePoolIsExhausted() {
+
+        held = Mono.from(connectionFactory.create()).block();
+
+        webTestClient.get().uri("/api/v2/beer/{beerId}?showInventoryOnHand=true", 1)
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+
+        webTestClient.get().uri("/api/v1/beer/{beerId}?showInventoryOnHand=true", 1)
+                .exchange()
+                .expectStatus().isEqualTo(503);
+
+        assertThat(meterRegistry.get("r2dbc.pool.acquire").tag("outcome", "exhausted").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("r2dbc.pool.acquired").gauge().value()).isEqualTo(1);
+
+        Mono.from(held.close()).block();
+        held = null;
+
+        webTestClient.get().uri("/api/v2/beer/{beerId}?showInventoryOnHand=true", 2)
+                .exchange()
+                .expectStatus().isOk();
+    }
+}
@@ -0,0 +1,46 @@
+package guru.springframework.sfgrestbrewery.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+class MetricsConfigTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void routesAreTimedByPatternAndStatusAndJsonEncodingByType() {
+
+        webTestClient.get().uri("/api/v2/beer/{beerId}", 2)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk();
+        // v2 writes cached bytes for a plain lookup, v1 still goes through the json encoder
+        webTestClient.get().uri("/api/v1/beer/{beerId}", 2)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get().uri("/api/v1/beerUpc/{upc}", "no-such-upc")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        assertThat(meterRegistry.get("http.server.requests")
+                .tags("uri", "/api/v2/beer/{beerId}", "status", "200").timer().count()).isPositive();
+        assertThat(meterRegistry.get("http.server.requests")
+                .tags("uri", "/api/v1/beerUpc/{upc}", "status", "404").timer().count()).isPositive();
+        assertThat(meterRegistry.get(TimedJsonEncoder.ENCODE_TIMER).tag("type", "BeerDto").timer().count()).isPositive();
+    }
+}
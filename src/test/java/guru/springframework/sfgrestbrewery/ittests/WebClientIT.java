@@ -23,6 +23,7 @@ import java.util.concurrent.TimeUnit;
 
 import static guru.springframework.sfgrestbrewery.bootstrap.BeerLoader.BEER_8_UPC;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT)
@@ -242,7 +243,7 @@ public class WebClientIT {
         CountDownLatch countDownLatch = new CountDownLatch(1);
         BeerDto beerDto = BeerDto.builder()
                 .beerName("My Beer")
-                .upc("8687655555")
+                .upc("8687655557")
                 .price(BigDecimal.valueOf(34.44))
                 .beerStyle("PALE_ALE").build();
 
@@ -300,5 +301,27 @@ public class WebClientIT {
 
     }
 
+    @Test
+    @Order(9)
+    void shouldAnswerConflictForADuplicateUpc() {
+
+        BeerDto beerDto = BeerDto.builder()
+                .beerName("Twin v1")
+                .upc("300000001")
+                .price(new BigDecimal("5.99"))
+                .beerStyle("PALE_ALE").build();
+
+        assertThat(saveBeer(beerDto).block().getStatusCode()).isEqualTo(HttpStatus.CREATED);
 
-}
\ No newline at end of file
+        WebClientResponseException conflict = assertThrows(WebClientResponseException.class, () -> saveBeer(beerDto).block());
+        assertThat(conflict.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(conflict.getResponseBodyAsString()).isEqualTo("upc : a beer with this upc already exists");
+    }
+
+    private Mono<ResponseEntity<Void>> saveBeer(BeerDto beerDto) {
+        return webClient.post().uri("/api/v1/beer")
+                .accept(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(beerDto))
+                .retrieve().toBodilessEntity();
+    }
+}
@@ -2,25 +2,33 @@ package guru.springframework.sfgrestbrewery.ittests;
 
 import guru.springframework.sfgrestbrewery.bootstrap.BeerLoader;
 import guru.springframework.sfgrestbrewery.web.functional.BeerRouterConfig;
+import guru.springframework.sfgrestbrewery.web.model.BeerBatchGetRequest;
+import guru.springframework.sfgrestbrewery.web.model.BeerBatchGetResult;
+import guru.springframework.sfgrestbrewery.web.model.BeerBulkResult;
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerInventoryAdjustment;
 import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import reactor.netty.http.client.HttpClient;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -148,6 +156,98 @@ public class WebClientV2IT {
         countDownLatch.await();
     }
 
+    @Test
+    void shouldStreamBeersAsNdJson() {
+
+        List<BeerDto> beers = webClient.get().uri(uriBuilder -> uriBuilder.path(BeerRouterConfig.API_V_2_BEER)
+                        .queryParam("beerStyle", "IPA").build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(BeerDto.class)
+                .collectList()
+                .block();
+
+        assertThat(beers).isNotEmpty();
+        assertThat(beers).allMatch(beerDto -> beerDto.getBeerStyle().equals("IPA"));
+    }
+
+    @Test
+    void shouldStreamBeersAsServerSentEvents() {
+
+        List<BeerDto> beers = webClient.get().uri(BeerRouterConfig.API_V_2_BEER)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .retrieve()
+                .bodyToFlux(BeerDto.class)
+                .take(3)
+                .collectList()
+                .block();
+
+        assertThat(beers).hasSize(3);
+    }
+
+    @Test
+    void shouldNotOversellAHotBeerUnderConcurrentDecrements() {
+
+        String location = webClient.post().uri(BeerRouterConfig.API_V_2_BEER)
+                .body(BodyInserters.fromValue(BeerDto.builder()
+                        .beerName("Hot Beer")
+                        .beerStyle("LAGER")
+                        .upc("8687655558")
+                        .price(BigDecimal.valueOf(3.99))
+                        .quantityOnHand(150)
+                        .build()))
+                .retrieve().toBodilessEntity()
+                .block()
+                .getHeaders().getFirst("location");
+        Integer beerId = Integer.valueOf(location.substring(location.lastIndexOf('/') + 1));
+
+        List<HttpStatus> statuses = Flux.range(0, 250)
+                .flatMap(i -> webClient.post().uri(BeerRouterConfig.API_V_2_BEER_INVENTORY, beerId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(BodyInserters.fromValue(BeerInventoryAdjustment.builder().delta(-1).build()))
+                        .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode())), 250)
+                .collectList()
+                .block();
+
+        assertThat(statuses).filteredOn(HttpStatus.OK::equals).hasSize(150);
+        assertThat(statuses).filteredOn(HttpStatus.CONFLICT::equals).hasSize(100);
+
+        BeerDto beer = webClient.get().uri(uriBuilder -> uriBuilder.path(BeerRouterConfig.API_V_2_BEER_ID)
+                        .queryParam("showInventoryOnHand", true).build(beerId))
+                .retrieve()
+                .bodyToMono(BeerDto.class)
+                .block();
+        assertThat(beer.getQuantityOnHand()).isZero();
+    }
+
+    @Test
+    void shouldSearchBeersByPrefix() {
+
+        List<BeerDto> beers = webClient.get().uri(uriBuilder -> uriBuilder.path(BeerRouterConfig.API_V_2_BEER_SEARCH)
+                        .queryParam("prefix", "galax")
+                        .queryParam("limit", 5)
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToFlux(BeerDto.class)
+                .collectList()
+                .block();
+
+        assertThat(beers).extracting(BeerDto::getBeerName).contains("Galaxy Cat");
+    }
+
+    @Test
+    void shouldRejectBlankSearchPrefix() {
+
+        HttpStatus status = webClient.get().uri(uriBuilder -> uriBuilder.path(BeerRouterConfig.API_V_2_BEER_SEARCH)
+                        .queryParam("prefix", " ")
+                        .build())
+                .exchangeToMono(response -> Mono.just(response.statusCode()))
+                .block();
+
+        assertThat(status).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
     @Test
     void shoudSaveBeer() throws InterruptedException {
 
@@ -186,7 +286,7 @@ public class WebClientV2IT {
         CountDownLatch countDownLatch = new CountDownLatch(1);
         BeerDto beerDto = BeerDto.builder()
                 .beerName("My Beer v2")
-                .upc("8687655555")
+                .upc("8687655556")
                 .price(BigDecimal.valueOf(34.44))
                 .beerStyle("PALE_ALE").build();
 
@@ -210,6 +310,95 @@ public class WebClientV2IT {
 
     }
 
+    @Test
+    void shouldAnswerConflictForADuplicateUpc() {
+
+        BeerDto first = BeerDto.builder().beerName("Twin One").beerStyle("ALE").upc("200000001").price(new BigDecimal("5.99")).build();
+        BeerDto second = BeerDto.builder().beerName("Twin Two").beerStyle("ALE").upc("200000002").price(new BigDecimal("5.99")).build();
+        saveV2(first).expectStatus().isOk();
+        String secondLocation = saveV2(second).expectStatus().isOk()
+                .returnResult(Void.class).getResponseHeaders().getFirst(HttpHeaders.LOCATION);
+
+        saveV2(first).expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(String.class).isEqualTo("upc : a beer with this upc already exists");
+
+        second.setUpc(first.getUpc());
+        WebTestClient.bindToServer().baseUrl(BASE_URL).build()
+                .put().uri(secondLocation)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(second)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    private WebTestClient.ResponseSpec saveV2(BeerDto beerDto) {
+        return WebTestClient.bindToServer().baseUrl(BASE_URL).build()
+                .post().uri(BeerRouterConfig.API_V_2_BEER)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(beerDto)
+                .exchange();
+    }
+
+    @Test
+    void shouldBulkSaveBeersWithPerItemErrors() {
+
+        List<BeerDto> beers = List.of(
+                BeerDto.builder().beerName("Bulk One").beerStyle("ALE").upc("100000001").price(new BigDecimal("5.99")).build(),
+                BeerDto.builder().price(new BigDecimal("5.99")).build(),
+                BeerDto.builder().beerName("Bulk Three").beerStyle("IPA").upc("100000003").price(new BigDecimal("6.99")).build());
+
+        List<BeerBulkResult> results = webClient.post().uri(BeerRouterConfig.API_V_2_BEER_BULK)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(beers))
+                .retrieve()
+                .bodyToFlux(BeerBulkResult.class)
+                .collectList()
+                .block();
+
+        assertThat(results).extracting(BeerBulkResult::getIndex).containsExactly(0L, 1L, 2L);
+        assertThat(results.get(0).getId()).isNotNull();
+        assertThat(results.get(1).getId()).isNull();
+        assertThat(results.get(1).getErrors()).hasSize(2);
+        assertThat(results.get(2).getId()).isNotNull();
+    }
+
+    @Test
+    void shouldBatchGetBeersByIdInRequestOrder() {
+
+        List<BeerBatchGetResult> results = webClient.get().uri(uriBuilder -> uriBuilder.path(BeerRouterConfig.API_V_2_BEER_BATCH_GET)
+                        .queryParam("ids", "5,99999,2")
+                        .queryParam("showInventoryOnHand", true)
+                        .build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(BeerBatchGetResult.class)
+                .collectList()
+                .block();
+
+        assertThat(results).extracting(BeerBatchGetResult::getKey).containsExactly("5", "99999", "2");
+        assertThat(results).extracting(BeerBatchGetResult::isFound).containsExactly(true, false, true);
+        assertThat(results.get(0).getBeer().getQuantityOnHand()).isNotNull();
+        assertThat(results.get(1).getBeer()).isNull();
+    }
+
+    @Test
+    void shouldBatchGetBeersByUpc() {
+
+        List<BeerBatchGetResult> results = webClient.post().uri(BeerRouterConfig.API_V_2_BEER_BATCH_GET)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(BeerBatchGetRequest.builder()
+                        .upcs(List.of(BeerLoader.BEER_2_UPC, "doesntexistUpc", BeerLoader.BEER_6_UPC))
+                        .build()))
+                .retrieve()
+                .bodyToFlux(BeerBatchGetResult.class)
+                .collectList()
+                .block();
+
+        assertThat(results).extracting(BeerBatchGetResult::isFound).containsExactly(true, false, true);
+        assertThat(results.get(2).getBeer().getUpc()).isEqualTo(BeerLoader.BEER_6_UPC);
+    }
+
     @Test
     void testSaveBeerBadRequest() throws InterruptedException {
 
@@ -278,6 +467,53 @@ public class WebClientV2IT {
         assertThat(countDownLatch.getCount()).isEqualTo(0);
     }
 
+    @Test
+    void shouldServeConditionalGetAndPutByETag() {
+
+        final Integer beerId = 5;
+
+        ResponseEntity<BeerDto> beer = webClient.get().uri(BeerRouterConfig.API_V_2_BEER_ID, beerId)
+                .retrieve().toEntity(BeerDto.class)
+                .block();
+        String eTag = beer.getHeaders().getETag();
+        assertThat(eTag).isNotNull();
+        assertThat(beer.getHeaders().getLastModified()).isPositive();
+
+        HttpStatus notModified = webClient.get().uri(BeerRouterConfig.API_V_2_BEER_ID, beerId)
+                .ifNoneMatch(eTag)
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()))
+                .block();
+        assertThat(notModified).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        BeerDto update = BeerDto.builder()
+                .beerName("Conditional Pils")
+                .upc(beer.getBody().getUpc())
+                .beerStyle(beer.getBody().getBeerStyle())
+                .price(beer.getBody().getPrice())
+                .build();
+
+        HttpStatus updated = webClient.put().uri(BeerRouterConfig.API_V_2_BEER_ID, beerId)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .body(BodyInserters.fromValue(update))
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()))
+                .block();
+        assertThat(updated).isEqualTo(HttpStatus.NO_CONTENT);
+
+        // the first update moved the version, so the same ETag is now stale
+        HttpStatus stale = webClient.put().uri(BeerRouterConfig.API_V_2_BEER_ID, beerId)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .body(BodyInserters.fromValue(update))
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()))
+                .block();
+        assertThat(stale).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        HttpStatus modified = webClient.get().uri(BeerRouterConfig.API_V_2_BEER_ID, beerId)
+                .ifNoneMatch(eTag)
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()))
+                .block();
+        assertThat(modified).isEqualTo(HttpStatus.OK);
+    }
+
     @Test
     void testUpdateBeerNotFound() throws InterruptedException {
 
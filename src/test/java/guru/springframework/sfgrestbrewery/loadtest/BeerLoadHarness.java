@@ -0,0 +1,154 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.HtmlUtils;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Drives the v1 and v2 beer endpoints of an already running app at the same open-model arrival rate and writes
+ * the latency distributions to target/loadtest as report.json and report.html.
+ *
+ * Run with: mvn -Ploadtest -DskipTests verify [-Dloadtest.rate=500 -Dloadtest.duration=PT60S ...]
+ */
+@Slf4j
+public class BeerLoadHarness {
+
+    public static void main(String[] args) throws IOException {
+        String baseUrl = System.getProperty("loadtest.baseUrl", "http://localhost:8080");
+        int maxInFlight = maxInFlight();
+        List<LoadScenario> scenarios = scenarios(System.getProperty("loadtest.scenarios", ""));
+
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(maxInFlight)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        WebClient webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build();
+
+        try {
+            run(baseUrl, loadTargets(webClient), scenarios.stream()
+                    .map(scenario -> scenario.over(webClient))
+                    .collect(Collectors.toList()));
+        } finally {
+            connectionProvider.dispose();
+        }
+    }
+
+    static int maxInFlight() {
+        return Integer.getInteger("loadtest.maxInFlight", 1000);
+    }
+
+    /**
+     * Ids and UPCs of the first hundred beers of the running app.
+     */
+    static LoadScenario.LoadTargets loadTargets(WebClient webClient) {
+        BeerPagedList catalog = webClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/api/v1/beer").queryParam("pageSize", 100).build())
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(BeerPagedList.class)
+                .block(Duration.ofSeconds(10));
+        return new LoadScenario.LoadTargets(catalog.getContent());
+    }
+
+    /**
+     * Runs each request in turn at the configured rate and writes the report. Shared with the harnesses
+     * of other transports, so their results land in the same report format.
+     */
+    static void run(String target, LoadScenario.LoadTargets targets, List<LoadRequest> requests) throws IOException {
+        int rate = Integer.getInteger("loadtest.rate", 200);
+        Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT10S"));
+        Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+        int maxInFlight = maxInFlight();
+        Path reportDir = Paths.get(System.getProperty("loadtest.reportDir", "target/loadtest"));
+
+        OpenModelLoadRunner runner = new OpenModelLoadRunner(targets, maxInFlight);
+        List<ScenarioResult> results = new ArrayList<>();
+        for (LoadRequest request : requests) {
+            ScenarioResult result = runner.run(request, rate, warmup, duration);
+            log.info("{}: p50 {} ms, p99 {} ms, p99.9 {} ms, {} errors", request.name(), result.getP50Millis(),
+                    result.getP99Millis(), result.getP999Millis(), result.getErrors());
+            results.add(result);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("baseUrl", target);
+        report.put("rate", rate);
+        report.put("warmup", warmup.toString());
+        report.put("duration", duration.toString());
+        report.put("maxInFlight", maxInFlight);
+        report.put("results", results);
+        writeReport(reportDir, report, results);
+    }
+
+    static List<LoadScenario> scenarios(String names) {
+        if (names.isBlank()) {
+            return Arrays.asList(LoadScenario.values());
+        }
+        return Arrays.stream(names.split(","))
+                .map(String::trim)
+                .map(LoadScenario::valueOf)
+                .collect(Collectors.toList());
+    }
+
+    private static void writeReport(Path reportDir, Map<String, Object> report, List<ScenarioResult> results)
+            throws IOException {
+        Files.createDirectories(reportDir);
+
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build()
+                .enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.writeValue(reportDir.resolve("report.json").toFile(), report);
+
+        StringBuilder html = new StringBuilder()
+                .append("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Beer API load test</title>\n")
+                .append("<style>table{border-collapse:collapse}td,th{border:1px solid #ccc;padding:4px 8px;text-align:right}")
+                .append("</style></head><body>\n<h1>Beer API load test</h1>\n<p>")
+                .append(HtmlUtils.htmlEscape(String.format("%s at %s req/s, warmup %s, measured %s, max in flight %s",
+                        report.get("baseUrl"), report.get("rate"), report.get("warmup"), report.get("duration"),
+                        report.get("maxInFlight"))))
+                .append("</p>\n<table>\n<tr><th>scenario</th><th>api</th><th>path</th><th>requests</th>")
+                .append("<th>errors</th><th>req/s</th><th>mean ms</th><th>p50 ms</th><th>p90 ms</th>")
+                .append("<th>p99 ms</th><th>p99.9 ms</th><th>max ms</th></tr>\n");
+        for (ScenarioResult result : results) {
+            html.append(String.format("<tr><td>%s</td><td>%s</td><td>%s</td><td>%d</td><td>%d</td><td>%.1f</td>"
+                            + "<td>%.3f</td><td>%.3f</td><td>%.3f</td><td>%.3f</td><td>%.3f</td><td>%.3f</td></tr>\n",
+                    result.getScenario(), result.getApi(), HtmlUtils.htmlEscape(result.getPath()),
+                    result.getRequests(), result.getErrors(), result.getAchievedRate(), result.getMeanMillis(),
+                    result.getP50Millis(), result.getP90Millis(), result.getP99Millis(), result.getP999Millis(),
+                    result.getMaxMillis()));
+        }
+        html.append("</table>\n");
+        for (ScenarioResult result : results) {
+            html.append("<h2>").append(result.getScenario()).append("</h2>\n<pre>")
+                    .append(HtmlUtils.htmlEscape(result.getPercentileDistribution()))
+                    .append("</pre>\n");
+        }
+        html.append("</body></html>\n");
+        Files.writeString(reportDir.resolve("report.html"), html);
+
+        log.info("Load test report written to {}", reportDir.toAbsolutePath());
+    }
+}
@@ -0,0 +1,17 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * A request shape bound to the client that sends it, what OpenModelLoadRunner fires at a fixed rate.
+ */
+interface LoadRequest {
+
+    String name();
+
+    String api();
+
+    String path();
+
+    Mono<?> request(LoadScenario.LoadTargets targets, long tick);
+}
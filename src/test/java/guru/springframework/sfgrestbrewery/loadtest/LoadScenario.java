@@ -0,0 +1,131 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * One request shape driven by the load test. The v1 and v2 variants of a lookup hit the same service call, so
+ * comparing them under the same arrival rate compares the annotated and functional web stacks.
+ */
+public enum LoadScenario {
+
+    V1_GET_BY_ID("v1", "/api/v1/beer/{beerId}") {
+        @Override
+        Mono<?> request(WebClient webClient, LoadTargets targets, long tick) {
+            return webClient.get().uri(path, targets.id(tick))
+                    .accept(MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .bodyToMono(BeerDto.class);
+        }
+    },
+    V2_GET_BY_ID("v2", "/api/v2/beer/{beerId}") {
+        @Override
+        Mono<?> request(WebClient webClient, LoadTargets targets, long tick) {
+            return webClient.get().uri(path, targets.id(tick))
+                    .accept(MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .bodyToMono(BeerDto.class);
+        }
+    },
+    V1_GET_BY_UPC("v1", "/api/v1/beerUpc/{upc}") {
+        @Override
+        Mono<?> request(WebClient webClient, LoadTargets targets, long tick) {
+            return webClient.get().uri(path, targets.upc(tick))
+                    .accept(MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .bodyToMono(BeerDto.class);
+        }
+    },
+    V2_GET_BY_UPC("v2", "/api/v2/beerUpc/{upc}") {
+        @Override
+        Mono<?> request(WebClient webClient, LoadTargets targets, long tick) {
+            return webClient.get().uri(path, targets.upc(tick))
+                    .accept(MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .bodyToMono(BeerDto.class);
+        }
+    },
+    V1_LIST_PAGE("v1", "/api/v1/beer") {
+        @Override
+        Mono<?> request(WebClient webClient, LoadTargets targets, long tick) {
+            return webClient.get().uri(uriBuilder -> uriBuilder.path(path).queryParam("pageSize", 25).build())
+                    .accept(MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .bodyToMono(BeerPagedList.class);
+        }
+    },
+    // streams the whole catalog rather than a page, so it is not directly comparable with V1_LIST_PAGE
+    V2_LIST_STREAM("v2", "/api/v2/beer") {
+        @Override
+        Mono<?> request(WebClient webClient, LoadTargets targets, long tick) {
+            return webClient.get().uri(path)
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .retrieve()
+                    .bodyToFlux(BeerDto.class)
+                    .count();
+        }
+    };
+
+    final String api;
+    final String path;
+
+    LoadScenario(String api, String path) {
+        this.api = api;
+        this.path = path;
+    }
+
+    abstract Mono<?> request(WebClient webClient, LoadTargets targets, long tick);
+
+    LoadRequest over(WebClient webClient) {
+        LoadScenario scenario = this;
+        return new LoadRequest() {
+            @Override
+            public String name() {
+                return scenario.name();
+            }
+
+            @Override
+            public String api() {
+                return scenario.api;
+            }
+
+            @Override
+            public String path() {
+                return scenario.path;
+            }
+
+            @Override
+            public Mono<?> request(LoadTargets targets, long tick) {
+                return scenario.request(webClient, targets, tick);
+            }
+        };
+    }
+
+    /**
+     * Ids and UPCs read from the running app before the load starts, handed out round robin by arrival.
+     */
+    static class LoadTargets {
+
+        private final List<BeerDto> beers;
+
+        LoadTargets(List<BeerDto> beers) {
+            if (beers.isEmpty()) {
+                throw new IllegalStateException("No beers to drive load against, is the catalog loaded?");
+            }
+            this.beers = beers;
+        }
+
+        Integer id(long tick) {
+            return beers.get((int) (tick % beers.size())).getId();
+        }
+
+        String upc(long tick) {
+            return beers.get((int) (tick % beers.size())).getUpc();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fires requests at a fixed arrival rate regardless of how fast earlier ones complete (an open workload model).
+ * Latency is measured from when a request was due to be sent, not when it actually was, so queueing in the
+ * client while the server falls behind shows up in the percentiles instead of hiding them.
+ */
+@Slf4j
+class OpenModelLoadRunner {
+
+    private final LoadScenario.LoadTargets targets;
+    private final int maxInFlight;
+
+    OpenModelLoadRunner(LoadScenario.LoadTargets targets, int maxInFlight) {
+        this.targets = targets;
+        this.maxInFlight = maxInFlight;
+    }
+
+    ScenarioResult run(LoadRequest scenario, int ratePerSecond, Duration warmup, Duration duration) {
+        log.info("Warming up {} at {} req/s for {}", scenario.name(), ratePerSecond, warmup);
+        drive(scenario, ratePerSecond, warmup);
+
+        log.info("Measuring {} at {} req/s for {}", scenario.name(), ratePerSecond, duration);
+        return drive(scenario, ratePerSecond, duration);
+    }
+
+    private ScenarioResult drive(LoadRequest scenario, int ratePerSecond, Duration duration) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long arrivals = duration.toNanos() / intervalNanos;
+
+        // micros, auto resizing so a stalled server can't overflow it
+        Histogram histogram = new ConcurrentHistogram(3);
+        AtomicLong errors = new AtomicLong();
+
+        long start = System.nanoTime();
+        Flux.interval(Duration.ofNanos(intervalNanos))
+                .take(arrivals)
+                .onBackpressureBuffer()
+                .flatMap(tick -> {
+                    long due = start + (tick + 1) * intervalNanos;
+                    return scenario.request(targets, tick)
+                            .then(Mono.fromRunnable(() -> record(histogram, due)))
+                            .onErrorResume(e -> {
+                                errors.incrementAndGet();
+                                log.debug("{} request failed: {}", scenario.name(), e.getMessage());
+                                record(histogram, due);
+                                return Mono.empty();
+                            });
+                }, maxInFlight)
+                .blockLast();
+        long elapsed = System.nanoTime() - start;
+
+        return new ScenarioResult(scenario, ratePerSecond, arrivals, errors.get(), elapsed, histogram);
+    }
+
+    private static void record(Histogram histogram, long due) {
+        histogram.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due)));
+    }
+}
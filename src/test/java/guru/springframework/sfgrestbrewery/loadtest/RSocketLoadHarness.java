@@ -0,0 +1,84 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives the v2 HTTP routes and their RSocket counterparts on the same running app, one after the other at
+ * the same arrival rate, into the report BeerLoadHarness writes. Both sides encode JSON, so the comparison is
+ * of the transports.
+ *
+ * Run with: mvn -Ploadtest -DskipTests verify
+ *     -Dloadtest.mainClass=guru.springframework.sfgrestbrewery.loadtest.RSocketLoadHarness
+ *     [-Dloadtest.rsocket.transport=websocket -Dloadtest.rsocket.tcpPort=7000 ...]
+ */
+public class RSocketLoadHarness {
+
+    private static final List<LoadScenario> HTTP_SCENARIOS = List.of(LoadScenario.V2_GET_BY_ID,
+            LoadScenario.V2_GET_BY_UPC, LoadScenario.V2_LIST_STREAM);
+
+    public static void main(String[] args) throws IOException {
+        String baseUrl = System.getProperty("loadtest.baseUrl", "http://localhost:8080");
+        String transport = System.getProperty("loadtest.rsocket.transport", "tcp");
+        int tcpPort = Integer.getInteger("loadtest.rsocket.tcpPort", 7000);
+        int maxInFlight = BeerLoadHarness.maxInFlight();
+
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(maxInFlight)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        WebClient webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build();
+        RSocketRequester requester = requester(baseUrl, transport, tcpPort);
+
+        try {
+            List<LoadRequest> requests = new ArrayList<>();
+            for (LoadScenario scenario : HTTP_SCENARIOS) {
+                requests.add(scenario.over(webClient));
+            }
+            for (RSocketLoadScenario scenario : RSocketLoadScenario.values()) {
+                requests.add(scenario.over(requester));
+            }
+            BeerLoadHarness.run(baseUrl + ", rsocket over " + transport, BeerLoadHarness.loadTargets(webClient), requests);
+        } finally {
+            requester.rsocketClient().dispose();
+            connectionProvider.dispose();
+        }
+    }
+
+    private static RSocketRequester requester(String baseUrl, String transport, int tcpPort) {
+        RSocketStrategies strategies = RSocketStrategies.builder()
+                .encoders(encoders -> encoders.add(new Jackson2JsonEncoder(Jackson2ObjectMapperBuilder.json().build())))
+                .decoders(decoders -> decoders.add(new Jackson2JsonDecoder(Jackson2ObjectMapperBuilder.json().build())))
+                .build();
+        RSocketRequester.Builder builder = RSocketRequester.builder()
+                .rsocketStrategies(strategies)
+                .dataMimeType(MediaType.APPLICATION_JSON);
+
+        URI uri = URI.create(baseUrl);
+        if ("websocket".equals(transport)) {
+            return builder.websocket(UriComponentsBuilder.fromUri(uri)
+                    .scheme("https".equals(uri.getScheme()) ? "wss" : "ws")
+                    .path("/rsocket")
+                    .build().toUri());
+        }
+        return builder.tcp(uri.getHost(), tcpPort);
+    }
+}
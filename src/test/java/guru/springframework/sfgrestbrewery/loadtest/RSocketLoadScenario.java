@@ -0,0 +1,78 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import guru.springframework.sfgrestbrewery.rsocket.BeerStreamRequest;
+import guru.springframework.sfgrestbrewery.web.model.BeerBatchGetResult;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The RSocket routes driven the same way LoadScenario drives HTTP. All requests share the one connection of
+ * the requester, which is the difference being measured.
+ */
+public enum RSocketLoadScenario {
+
+    RSOCKET_GET_BY_ID("beer.id") {
+        @Override
+        Mono<?> request(RSocketRequester requester, LoadScenario.LoadTargets targets, long tick) {
+            return requester.route(route).data(targets.id(tick)).retrieveMono(BeerDto.class);
+        }
+    },
+    RSOCKET_GET_BY_UPC("beer.upc") {
+        @Override
+        Mono<?> request(RSocketRequester requester, LoadScenario.LoadTargets targets, long tick) {
+            return requester.route(route).data(targets.upc(tick)).retrieveMono(BeerDto.class);
+        }
+    },
+    // the whole catalog, comparable with V2_LIST_STREAM
+    RSOCKET_STREAM("beer.stream") {
+        @Override
+        Mono<?> request(RSocketRequester requester, LoadScenario.LoadTargets targets, long tick) {
+            return requester.route(route).data(new BeerStreamRequest()).retrieveFlux(BeerDto.class).count();
+        }
+    },
+    // resolves UPCS_PER_CHANNEL upcs per arrival over one channel, there is no HTTP scenario to hold it against
+    RSOCKET_UPC_CHANNEL("beer.upcs") {
+        @Override
+        Mono<?> request(RSocketRequester requester, LoadScenario.LoadTargets targets, long tick) {
+            Flux<String> upcs = Flux.range(0, UPCS_PER_CHANNEL).map(i -> targets.upc(tick * UPCS_PER_CHANNEL + i));
+            return requester.route(route).data(upcs, String.class).retrieveFlux(BeerBatchGetResult.class).count();
+        }
+    };
+
+    static final int UPCS_PER_CHANNEL = 25;
+
+    final String route;
+
+    RSocketLoadScenario(String route) {
+        this.route = route;
+    }
+
+    abstract Mono<?> request(RSocketRequester requester, LoadScenario.LoadTargets targets, long tick);
+
+    LoadRequest over(RSocketRequester requester) {
+        RSocketLoadScenario scenario = this;
+        return new LoadRequest() {
+            @Override
+            public String name() {
+                return scenario.name();
+            }
+
+            @Override
+            public String api() {
+                return "rsocket";
+            }
+
+            @Override
+            public String path() {
+                return scenario.route;
+            }
+
+            @Override
+            public Mono<?> request(LoadScenario.LoadTargets targets, long tick) {
+                return scenario.request(requester, targets, tick);
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of one measured scenario run, values in milliseconds.
+ */
+@Getter
+public class ScenarioResult {
+
+    private final String scenario;
+    private final String api;
+    private final String path;
+    private final int targetRate;
+    private final long requests;
+    private final long errors;
+    private final double achievedRate;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double p999Millis;
+    private final double maxMillis;
+
+    @JsonIgnore
+    private final Histogram histogram;
+
+    ScenarioResult(LoadRequest scenario, int targetRate, long requests, long errors, long elapsedNanos,
+                   Histogram histogram) {
+        this.scenario = scenario.name();
+        this.api = scenario.api();
+        this.path = scenario.path();
+        this.targetRate = targetRate;
+        this.requests = requests;
+        this.errors = errors;
+        this.achievedRate = requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        this.meanMillis = histogram.getMean() / 1000.0;
+        this.p50Millis = percentile(histogram, 50.0);
+        this.p90Millis = percentile(histogram, 90.0);
+        this.p99Millis = percentile(histogram, 99.0);
+        this.p999Millis = percentile(histogram, 99.9);
+        this.maxMillis = histogram.getMaxValue() / 1000.0;
+        this.histogram = histogram;
+    }
+
+    /**
+     * The full HdrHistogram percentile distribution, in the format its plotter reads.
+     */
+    public String getPercentileDistribution() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        histogram.outputPercentileDistribution(new PrintStream(out, true, StandardCharsets.UTF_8), 1000.0);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static double percentile(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,192 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.bootstrap.BeerLoader;
+import guru.springframework.sfgrestbrewery.services.BeerService;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.r2dbc.proxy.ProxyConnectionFactory;
+import io.r2dbc.proxy.core.Binding;
+import io.r2dbc.proxy.core.Bindings;
+import io.r2dbc.proxy.core.QueryInfo;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Statement;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs every query shape BeerServiceImpl issues, then EXPLAINs the captured SQL with its bindings
+ * and fails if H2 plans a full table scan for any of them.
+ */
+@Slf4j
+@SpringBootTest
+class BeerQueryPlanTest {
+
+    static final Map<String, Bindings> STATEMENTS = new ConcurrentHashMap<>();
+    static ConnectionFactory unwrapped;
+
+    @Autowired
+    BeerService beerService;
+
+    @BeforeEach
+    void setUp() {
+        STATEMENTS.clear();
+    }
+
+    @Test
+    void pointLookupsUseAnIndex() {
+
+        beerService.getById(3, true).block();
+        beerService.getByUpc(BeerLoader.BEER_5_UPC).block();
+        beerService.getByIds(List.of(1, 2, 3), false).blockLast();
+        beerService.getByUpcs(List.of(BeerLoader.BEER_1_UPC, BeerLoader.BEER_2_UPC), false).blockLast();
+
+        assertNoTableScans(4);
+    }
+
+    @Test
+    void filteredListsUseAnIndex() {
+
+        beerService.listBeers("Blessed", null, PageRequest.of(0, 5), false).block();
+        beerService.listBeers(null, BeerStyleEnum.IPA, PageRequest.of(1, 3), false).block();
+        beerService.listBeers("Blessed", BeerStyleEnum.STOUT, PageRequest.of(0, 5), false).block();
+        beerService.streamBeers(null, BeerStyleEnum.ALE, false).blockLast();
+
+        assertNoTableScans(4);
+    }
+
+    @Test
+    void keysetPagesSeekOnAnIndex() {
+
+        for (String sortKey : List.of("id", "beerName", "price")) {
+            BeerPagedList firstPage = beerService.listBeers(null, null, PageRequest.of(0, 3, Sort.by(sortKey)), false).block();
+            beerService.listBeersFromCursor(null, null, firstPage.getNextCursor(), 3, false).block();
+
+            BeerPagedList stouts = beerService.listBeers(null, BeerStyleEnum.STOUT, PageRequest.of(0, 2, Sort.by(sortKey)), false).block();
+            beerService.listBeersFromCursor(null, BeerStyleEnum.STOUT, stouts.getNextCursor(), 2, false).block();
+        }
+
+        assertNoTableScans(6);
+    }
+
+    @Test
+    void writesLocateTheRowByIndex() {
+
+        BeerDto saved = beerService.saveNewBeer(BeerDto.builder()
+                .beerName("Plan Beer")
+                .beerStyle(BeerStyleEnum.GOSE.name())
+                .upc("0000000000042")
+                .price(new BigDecimal("3.50"))
+                .build()).block();
+
+        beerService.updateBeer(saved.getId(), BeerDto.builder()
+                .beerName("Plan Beer 2")
+                .beerStyle(BeerStyleEnum.GOSE.name())
+                .upc("0000000000042")
+                .price(new BigDecimal("3.75"))
+                .build()).block();
+
+        beerService.adjustInventory(saved.getId(), 5).block();
+
+        beerService.deleteReactiveBeer(saved.getId()).block();
+
+        assertNoTableScans(3);
+    }
+
+    private void assertNoTableScans(int minimumStatements) {
+
+        Map<String, Bindings> statements = new HashMap<>(STATEMENTS);
+        // the only statement allowed to touch every row is the unfiltered count, which H2 answers from metadata
+        statements.keySet().removeIf(sql -> sql.startsWith("INSERT") || isUnfilteredCount(sql));
+
+        assertThat(statements).hasSizeGreaterThanOrEqualTo(minimumStatements);
+
+        SoftAssertions softly = new SoftAssertions();
+        statements.forEach((sql, bindings) -> {
+            String plan = explain(sql, bindings);
+            log.debug("{}\n  -> {}", sql, plan);
+            softly.assertThat(plan).as(sql).doesNotContainIgnoringCase("tableScan");
+        });
+        softly.assertAll();
+    }
+
+    private boolean isUnfilteredCount(String sql) {
+        return sql.startsWith("SELECT COUNT(") && !sql.contains("WHERE");
+    }
+
+    private String explain(String sql, Bindings bindings) {
+        return Mono.usingWhen(Mono.from(unwrapped.create()),
+                connection -> Flux.from(bind(connection.createStatement("EXPLAIN " + sql), bindings).execute())
+                        .flatMap(result -> result.map((row, metadata) -> row.get(0, String.class)))
+                        .next(),
+                Connection::close).block();
+    }
+
+    private Statement bind(Statement statement, Bindings bindings) {
+        if (bindings == null) {
+            return statement;
+        }
+        for (Binding binding : bindings.getIndexBindings()) {
+            int index = (Integer) binding.getKey();
+            if (binding.getBoundValue().isNull()) {
+                statement.bindNull(index, binding.getBoundValue().getNullType());
+            } else {
+                statement.bind(index, binding.getBoundValue().getValue());
+            }
+        }
+        for (Binding binding : bindings.getNamedBindings()) {
+            String name = (String) binding.getKey();
+            if (binding.getBoundValue().isNull()) {
+                statement.bindNull(name, binding.getBoundValue().getNullType());
+            } else {
+                statement.bind(name, binding.getBoundValue().getValue());
+            }
+        }
+        return statement;
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        static BeanPostProcessor recordingConnectionFactory() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof ConnectionFactory)) {
+                        return bean;
+                    }
+                    unwrapped = (ConnectionFactory) bean;
+                    return ProxyConnectionFactory.builder(unwrapped)
+                            .onBeforeQuery(execution -> {
+                                for (QueryInfo query : execution.getQueries()) {
+                                    List<Bindings> bindings = query.getBindingsList();
+                                    STATEMENTS.put(query.getQuery().trim(), bindings.isEmpty() ? new Bindings() : bindings.get(0));
+                                }
+                            })
+                            .build();
+                }
+            };
+        }
+    }
+}
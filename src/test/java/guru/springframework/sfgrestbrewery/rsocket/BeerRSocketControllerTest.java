@@ -0,0 +1,110 @@
+package guru.springframework.sfgrestbrewery.rsocket;
+
+import guru.springframework.sfgrestbrewery.bootstrap.BeerLoader;
+import guru.springframework.sfgrestbrewery.web.model.BeerBatchGetResult;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "sfg.brewery.rsocket.tcp-port=0")
+class BeerRSocketControllerTest {
+
+    @Autowired
+    RSocketRequester.Builder requesterBuilder;
+
+    @Autowired
+    RSocketTcpServer tcpServer;
+
+    @LocalServerPort
+    int httpPort;
+
+    private final List<RSocketRequester> requesters = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        requesters.forEach(requester -> requester.rsocketClient().dispose());
+    }
+
+    @Test
+    void beersAreLookedUpOverTcp() {
+
+        RSocketRequester requester = tcp();
+
+        BeerDto byUpc = requester.route("beer.upc").data(BeerLoader.BEER_1_UPC).retrieveMono(BeerDto.class).block();
+        assertThat(byUpc.getUpc()).isEqualTo(BeerLoader.BEER_1_UPC);
+
+        BeerDto byId = requester.route("beer.id").data(byUpc.getId()).retrieveMono(BeerDto.class).block();
+        assertThat(byId).isEqualTo(byUpc);
+
+        assertThat(requester.route("beer.id").data(Integer.MAX_VALUE).retrieveMono(BeerDto.class).block()).isNull();
+    }
+
+    @Test
+    void beersAreLookedUpOverWebSocket() {
+
+        RSocketRequester requester = requesterBuilder.websocket(URI.create("ws://localhost:" + httpPort + "/rsocket"));
+        requesters.add(requester);
+
+        assertThat(requester.route("beer.upc").data(BeerLoader.BEER_2_UPC).retrieveMono(BeerDto.class).block()
+                .getUpc()).isEqualTo(BeerLoader.BEER_2_UPC);
+    }
+
+    @Test
+    void streamIsFilteredAndFollowsDemand() {
+
+        List<BeerDto> ipas = tcp().route("beer.stream")
+                .data(BeerStreamRequest.builder().beerStyle(BeerStyleEnum.IPA).showInventoryOnHand(true).build())
+                .retrieveFlux(BeerDto.class)
+                .limitRate(2)
+                .collectList()
+                .block();
+
+        assertThat(ipas).isNotEmpty().allSatisfy(beer -> {
+            assertThat(beer.getBeerStyle()).isEqualTo(BeerStyleEnum.IPA.name());
+            assertThat(beer.getQuantityOnHand()).isNotNull();
+        });
+    }
+
+    @Test
+    void upcsAreResolvedInOrderWithoutRunningAheadOfTheConsumer() {
+
+        AtomicLong sent = new AtomicLong();
+        Flux<String> upcs = Flux.range(0, 1000)
+                .map(i -> i % 3 == 0 ? "missing-" + i : i % 2 == 0 ? BeerLoader.BEER_1_UPC : BeerLoader.BEER_3_UPC)
+                .doOnNext(upc -> sent.incrementAndGet());
+
+        List<BeerBatchGetResult> firstTen = tcp().route("beer.upcs").data(upcs, String.class)
+                .retrieveFlux(BeerBatchGetResult.class)
+                .limitRate(10)
+                .take(10)
+                .collectList()
+                .block();
+
+        assertThat(firstTen).extracting(BeerBatchGetResult::getKey).containsExactly("missing-0",
+                BeerLoader.BEER_3_UPC, BeerLoader.BEER_1_UPC, "missing-3", BeerLoader.BEER_1_UPC,
+                BeerLoader.BEER_3_UPC, "missing-6", BeerLoader.BEER_3_UPC, BeerLoader.BEER_1_UPC, "missing-9");
+        assertThat(firstTen.get(0).isFound()).isFalse();
+        assertThat(firstTen.get(1).getBeer().getUpc()).isEqualTo(BeerLoader.BEER_3_UPC);
+        // the responder only pulls upcs as results are taken, so far fewer than all of them were sent
+        assertThat(sent.get()).isLessThan(1000);
+    }
+
+    private RSocketRequester tcp() {
+        RSocketRequester requester = requesterBuilder.tcp("localhost", tcpServer.getPort());
+        requesters.add(requester);
+        return requester;
+    }
+}
@@ -0,0 +1,120 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchLoaderTest {
+
+    static final Duration SLOW_BATCH = Duration.ofMillis(200);
+
+    SimpleMeterRegistry meterRegistry;
+    List<Collection<Integer>> batches;
+    BatchLoader<Integer, String> batchLoader;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        batches = new CopyOnWriteArrayList<>();
+        batchLoader = new BatchLoader<>("id", keys -> {
+            batches.add(keys);
+            if (keys.contains(-1)) {
+                return Flux.error(new IllegalStateException("boom"));
+            }
+            if (keys.contains(-2)) {
+                throw new IllegalStateException("boom before the query");
+            }
+            // odd keys don't exist, keys from 100 take a while
+            Flux<String> values = Flux.fromIterable(keys).filter(key -> key % 2 == 0).map(String::valueOf);
+            return keys.stream().anyMatch(key -> key >= 100) ? values.delaySubscription(SLOW_BATCH) : values;
+        }, Integer::valueOf, 5, Duration.ofMillis(50), 2, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchLoader.dispose();
+    }
+
+    @Test
+    void keysWithinTheWindowShareOneBatch() {
+
+        List<Mono<String>> loads = new ArrayList<>();
+        for (int key = 2; key <= 8; key += 2) {
+            loads.add(batchLoader.load(key));
+        }
+
+        List<String> values = Flux.merge(loads).collectList().block();
+
+        assertThat(values).containsExactlyInAnyOrder("2", "4", "6", "8");
+        assertThat(batches).hasSize(1);
+        assertThat(meterRegistry.get("beer.lookup.batch.size").summary().totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    void fullBatchIsDispatchedBeforeTheWindowCloses() {
+
+        List<Mono<String>> loads = new ArrayList<>();
+        for (int key = 0; key < 12; key += 2) {
+            loads.add(batchLoader.load(key));
+        }
+
+        assertThat(Flux.merge(loads).collectList().block()).hasSize(6);
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0)).hasSize(5);
+    }
+
+    @Test
+    void missingKeysCompleteEmpty() {
+
+        assertThat(Mono.zip(batchLoader.load(2), batchLoader.load(3).defaultIfEmpty("missing")).block().toList())
+                .containsExactly("2", "missing");
+    }
+
+    @Test
+    void failedBatchFailsItsCallersOnly() {
+
+        assertThrows(IllegalStateException.class, () -> batchLoader.load(-1).block());
+        assertThrows(IllegalStateException.class, () -> batchLoader.load(-2).block());
+        assertThat(batchLoader.load(4).block()).isEqualTo("4");
+    }
+
+    @Test
+    void windowsClosingWhileEveryBatchSlotIsBusyWaitTheirTurn() throws InterruptedException {
+
+        // six windows of slow keys against two batches at a time
+        List<Mono<String>> slow = new ArrayList<>();
+        for (int window = 0; window < 6; window++) {
+            Mono<String> load = batchLoader.load(100 + 2 * window).cache();
+            load.subscribe();
+            slow.add(load);
+            Thread.sleep(60);
+        }
+
+        assertThat(batchLoader.load(4).block(Duration.ofSeconds(5))).isEqualTo("4");
+        assertThat(Flux.merge(slow).collectList().block(Duration.ofSeconds(5)))
+                .containsExactlyInAnyOrder("100", "102", "104", "106", "108", "110");
+    }
+
+    @Test
+    void stoppedLoaderFailsWaitingKeys() {
+
+        Mono<String> waiting = batchLoader.load(2).cache();
+        waiting.subscribe(value -> { }, e -> { });
+        batchLoader.dispose();
+
+        assertThrows(IllegalStateException.class, waiting::block);
+        assertThrows(IllegalStateException.class, () -> batchLoader.load(4).block());
+    }
+}
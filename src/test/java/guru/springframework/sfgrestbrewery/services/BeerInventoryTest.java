@@ -0,0 +1,136 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.web.controller.InsufficientInventoryException;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "sfg.brewery.inventory.write-behind.enabled=true",
+        // flushes only happen when the test asks for them
+        "sfg.brewery.inventory.write-behind.flush-interval=1h",
+        "sfg.brewery.inventory.write-behind.flush-threshold=1000000"
+})
+class BeerInventoryTest {
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerInventory beerInventory;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerLookup beerLookup;
+
+    @Autowired
+    BeerCache beerCache;
+
+    @Autowired
+    BeerReadModel beerReadModel;
+
+    @Autowired
+    R2dbcEntityTemplate r2dbcEntityTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void concurrentSalesAreServedFromMemoryWithoutOverselling() {
+
+        BeerDto hotBeer = newBeer("Write Behind Weisse", "wb-1", 300);
+
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        Flux.range(0, 500)
+                .flatMap(i -> beerService.adjustInventory(hotBeer.getId(), -1)
+                        .doOnNext(beerDto -> sold.incrementAndGet())
+                        .onErrorResume(InsufficientInventoryException.class, e -> {
+                            refused.incrementAndGet();
+                            return Mono.empty();
+                        }), 500)
+                .blockLast();
+
+        assertThat(sold.get()).isEqualTo(300);
+        assertThat(refused.get()).isEqualTo(200);
+        assertThat(beerService.getById(hotBeer.getId(), true).block().getQuantityOnHand()).isZero();
+
+        // nothing reached the row yet, then one flush writes the summed delta
+        assertThat(quantityInDatabase(hotBeer.getId())).isEqualTo(300);
+        beerInventory.flush().block();
+        assertThat(quantityInDatabase(hotBeer.getId())).isZero();
+    }
+
+    @Test
+    void adjustmentsAreTimedLikeTheDatabaseOnes() {
+
+        BeerDto beer = newBeer("Timed Tripel", "wb-3", 10);
+        long calls = adjustInventoryCalls();
+
+        beerService.adjustInventory(beer.getId(), -2).block();
+
+        // the timer stops in doFinally, which can run on the database thread just after block() returned
+        Flux.interval(Duration.ofMillis(10)).map(tick -> adjustInventoryCalls())
+                .takeUntil(count -> count > calls)
+                .take(Duration.ofSeconds(5))
+                .blockLast();
+        assertThat(adjustInventoryCalls()).isEqualTo(calls + 1);
+    }
+
+    @Test
+    void pendingDeltasAreFlushedOnShutdownAndReloadedOnStartup() {
+
+        BeerDto beer = newBeer("Write Behind Bock", "wb-2", 50);
+
+        beerService.adjustInventory(beer.getId(), -20).block();
+        beerService.adjustInventory(beer.getId(), 5).block();
+
+        BeerInventory restarted = new BeerInventory(beerLookup, beerCache, beerReadModel, r2dbcEntityTemplate,
+                new SimpleMeterRegistry(),
+                true, Duration.ofHours(1), 1_000_000);
+        assertThat(quantityInDatabase(beer.getId())).isEqualTo(50);
+
+        beerInventory.stop();
+        assertThat(quantityInDatabase(beer.getId())).isEqualTo(35);
+
+        assertThat(restarted.adjust(beer.getId(), -35).block()).isZero();
+        restarted.stop();
+        assertThat(quantityInDatabase(beer.getId())).isZero();
+    }
+
+    private BeerDto newBeer(String name, String upc, int quantityOnHand) {
+        return beerService.saveNewBeer(BeerDto.builder()
+                .beerName(name)
+                .beerStyle(BeerStyleEnum.WHEAT.name())
+                .upc(upc)
+                .price(new BigDecimal("3.49"))
+                .quantityOnHand(quantityOnHand)
+                .build()).block();
+    }
+
+    private Integer quantityInDatabase(Integer beerId) {
+        return beerRepository.findById(beerId).block().getQuantityOnHand();
+    }
+
+    private long adjustInventoryCalls() {
+        Timer timer = meterRegistry.find(BeerMetrics.SERVICE_TIMER).tags("method", "adjustInventory", "cache", "bypass").timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,104 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class BeerJsonRowsTest {
+
+    @Autowired
+    BeerJsonRows beerJsonRows;
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    R2dbcEntityTemplate r2dbcEntityTemplate;
+
+    @Autowired
+    BeerInventory beerInventory;
+
+    @Autowired
+    BeerMetrics beerMetrics;
+
+    @Test
+    void rowJsonIsWhatTheObjectMapperWritesForTheDto() {
+
+        assertThat(rowJson(null, false)).isNotEmpty().isEqualTo(dtoJson(null, false));
+        assertThat(rowJson(null, true)).isEqualTo(dtoJson(null, true));
+        assertThat(rowJson(BeerStyleEnum.STOUT, false)).isEqualTo(dtoJson(BeerStyleEnum.STOUT, false));
+    }
+
+    @Test
+    void framesEveryBeer() {
+
+        List<String> events = beerJsonRows.stream(null, BeerStyleEnum.IPA, false, new DefaultDataBufferFactory(),
+                "data:".getBytes(StandardCharsets.UTF_8), "\n\n".getBytes(StandardCharsets.UTF_8))
+                .map(this::text)
+                .collectList()
+                .block();
+
+        assertThat(events).isNotEmpty().allMatch(event -> event.startsWith("data:{") && event.endsWith("}\n\n"));
+    }
+
+    @Test
+    void streamsWaitForTheQueryLimit() {
+
+        BeerQueryLimiter limiter = new BeerQueryLimiter(new SimpleMeterRegistry(), true, 1, 1, 1, 1000,
+                Duration.ofMillis(100));
+        BeerJsonRows limited = new BeerJsonRows(r2dbcEntityTemplate, objectMapper, beerInventory, beerMetrics, limiter);
+        limiter.limit(Mono.never()).subscribe();
+
+        assertThrows(QueryLimitExceededException.class, () -> limited.stream(null, null, false,
+                new DefaultDataBufferFactory(), new byte[0], new byte[0]).blockLast());
+    }
+
+    private List<String> rowJson(BeerStyleEnum beerStyle, boolean showInventoryOnHand) {
+        return beerJsonRows.stream(null, beerStyle, showInventoryOnHand, new DefaultDataBufferFactory(),
+                new byte[0], new byte[0])
+                .map(this::text)
+                .collectList()
+                .block();
+    }
+
+    private List<String> dtoJson(BeerStyleEnum beerStyle, boolean showInventoryOnHand) {
+        return beerService.streamBeers(null, beerStyle, showInventoryOnHand)
+                .collectList()
+                .block()
+                .stream()
+                .map(beerDto -> {
+                    try {
+                        return objectMapper.writeValueAsString(beerDto);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .collect(Collectors.toList());
+    }
+
+    private String text(DataBuffer buffer) {
+        String text = buffer.toString(StandardCharsets.UTF_8);
+        DataBufferUtils.release(buffer);
+        return text;
+    }
+}
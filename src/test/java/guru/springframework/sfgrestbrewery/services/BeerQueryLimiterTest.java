@@ -0,0 +1,201 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Statement;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Slf4j
+class BeerQueryLimiterTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void limitGrowsUpToWhatTheDatabaseCanTake() {
+
+        BeerQueryLimiter limiter = limiter(1, 1000);
+
+        double limit = converge(limiter, new LatencyInjectingConnectionFactory(16, Duration.ofMillis(20)));
+
+        assertThat(limit).isBetween(14.0, 32.0);
+    }
+
+    @Test
+    void limitComesDownWhenQueriesQueueInTheDatabase() {
+
+        BeerQueryLimiter limiter = limiter(100, 1000);
+
+        double limit = converge(limiter, new LatencyInjectingConnectionFactory(8, Duration.ofMillis(20)));
+
+        assertThat(limit).isBetween(6.0, 16.0);
+    }
+
+    @Test
+    void queriesOverTheLimitWaitThenAreRefused() {
+
+        BeerQueryLimiter limiter = limiter(1, 100);
+        Sinks.Empty<Void> running = Sinks.empty();
+        limiter.limit(running.asMono()).subscribe();
+
+        AtomicInteger ran = new AtomicInteger();
+        limiter.limit(Mono.fromRunnable(ran::incrementAndGet)).subscribe();
+        assertThat(ran.get()).isZero();
+
+        running.tryEmitEmpty();
+        assertThat(ran.get()).isEqualTo(1);
+
+        limiter.limit(Mono.never()).subscribe();
+        assertThrows(QueryLimitExceededException.class, () -> limiter.limit(Mono.empty()).block());
+        assertThat(meterRegistry.get(BeerQueryLimiter.REJECTED_COUNTER).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(BeerQueryLimiter.IN_FLIGHT_GAUGE).gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void stalledStreamsDontHoldSlotsPointLookupsNeed() {
+
+        BeerQueryLimiter limiter = limiter(3, 100);
+        // clients that read the first row of a stream and then stop reading
+        for (int i = 0; i < 3; i++) {
+            limiter.limit(Flux.concat(Flux.just(i), Flux.never())).subscribe();
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(limiter.limit(Mono.just(i)).block(Duration.ofSeconds(1))).isEqualTo(i);
+        }
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void startsAtTheInitialLimit() {
+
+        assertThat(limiter(10, 100).getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void probeEndsWhenItsQueriesDontFinishInTime() {
+
+        AtomicLong nanoTime = new AtomicLong();
+        BeerQueryLimiter limiter = new BeerQueryLimiter(meterRegistry, true, 10, 1, 100, 1000,
+                Duration.ofSeconds(5), nanoTime::get);
+        Mono<Long> oneMilli = Mono.fromSupplier(() -> nanoTime.addAndGet(Duration.ofMillis(1).toNanos()));
+        for (int i = 0; i < 100 && limiter.getLimit() != 3; i++) {
+            limiter.limit(oneMilli).block();
+        }
+        assertThat(limiter.getLimit()).isEqualTo(3);
+
+        for (int i = 0; i < 3; i++) {
+            limiter.limit(Mono.never()).subscribe();
+        }
+        AtomicInteger ran = new AtomicInteger();
+        limiter.limit(Mono.fromRunnable(ran::incrementAndGet)).subscribe();
+        assertThat(ran.get()).isZero();
+
+        nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+        limiter.limit(Mono.fromRunnable(ran::incrementAndGet)).block(Duration.ofSeconds(1));
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+        assertThat(ran.get()).isEqualTo(2);
+    }
+
+    private BeerQueryLimiter limiter(int initialLimit, long maxWaitMillis) {
+        return new BeerQueryLimiter(meterRegistry, true, initialLimit, 1, 100, 1000, Duration.ofMillis(maxWaitMillis));
+    }
+
+    /**
+     * Many more callers than the database can serve at once, each running queries back to back. Answers the
+     * average limit over the second half of the run, once it had time to settle.
+     */
+    private double converge(BeerQueryLimiter limiter, LatencyInjectingConnectionFactory connectionFactory) {
+        DatabaseClient databaseClient = DatabaseClient.create(connectionFactory);
+        Mono<Integer> query = databaseClient.sql("SELECT 1").map(row -> row.get(0, Integer.class)).one();
+
+        int queries = 2000;
+        AtomicLong settledLimits = new AtomicLong();
+        Flux.range(0, queries)
+                .flatMap(i -> limiter.limit(query)
+                        .doOnNext(one -> {
+                            if (i >= queries / 2) {
+                                settledLimits.addAndGet(limiter.getLimit());
+                            }
+                        }), 64)
+                .blockLast(Duration.ofSeconds(30));
+
+        double limit = settledLimits.get() / (queries / 2.0);
+        log.debug("Limit {} on a database taking {} queries at once", limit, connectionFactory.capacity);
+        return limit;
+    }
+
+    /**
+     * H2 behind a database that works on a fixed number of queries at once. Past that, every query takes
+     * longer in proportion to how many are running, as they would when they queue for its workers.
+     */
+    static class LatencyInjectingConnectionFactory implements ConnectionFactory {
+
+        final ConnectionFactory delegate = H2ConnectionFactory.inMemory("query-limit");
+        final int capacity;
+        final Duration latency;
+        final AtomicInteger active = new AtomicInteger();
+
+        LatencyInjectingConnectionFactory(int capacity, Duration latency) {
+            this.capacity = capacity;
+            this.latency = latency;
+        }
+
+        @Override
+        public Publisher<? extends Connection> create() {
+            return Mono.from(delegate.create()).map(connection -> proxy(Connection.class, connection, (method, result) ->
+                    method.getName().equals("createStatement")
+                            ? proxy(Statement.class, (Statement) result, this::delayExecution)
+                            : result));
+        }
+
+        @Override
+        public ConnectionFactoryMetadata getMetadata() {
+            return delegate.getMetadata();
+        }
+
+        private Object delayExecution(Method method, Object result) {
+            if (!method.getName().equals("execute")) {
+                return result;
+            }
+            return Flux.defer(() -> {
+                int running = active.incrementAndGet();
+                Duration delay = latency.multipliedBy(Math.max(capacity, running)).dividedBy(capacity);
+                return Flux.from((Publisher<?>) result)
+                        .delaySubscription(delay)
+                        .doFinally(signal -> active.decrementAndGet());
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, BiFunction<Method, Object, Object> onResult) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                try {
+                    return onResult.apply(method, method.invoke(target, args));
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.web.model.BeerBatchGetResult;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.relational.core.query.Query.empty;
+
+@SpringBootTest(properties = "sfg.brewery.read-model.enabled=true")
+@AutoConfigureWebTestClient
+class BeerReadModelTest {
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerReadModel beerReadModel;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    R2dbcEntityTemplate r2dbcEntityTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Test
+    void readsAreServedWithoutTheDatabase() {
+
+        assertThat(beerReadModel.isServing()).isTrue();
+        List<Integer> byPriceInDatabase = r2dbcEntityTemplate.select(Beer.class)
+                .matching(empty().sort(BeerCursor.sortFor("price")))
+                .all().map(Beer::getId).collectList().block();
+        Beer first = beerRepository.findById(byPriceInDatabase.get(0)).block();
+        long acquired = connectionsAcquired();
+        assertThat(acquired).isPositive();
+
+        BeerPagedList page = beerService.listBeers(null, null,
+                PageRequest.of(0, byPriceInDatabase.size(), Sort.by("price")), false).block();
+        assertThat(ids(page.getContent())).isEqualTo(byPriceInDatabase);
+        assertThat(page.getTotalElements()).isEqualTo(byPriceInDatabase.size());
+
+        List<BeerDto> walked = new ArrayList<>();
+        BeerPagedList cursorPage = beerService.listBeers(null, null, PageRequest.of(0, 7, Sort.by("price")), false).block();
+        walked.addAll(cursorPage.getContent());
+        while (cursorPage.getNextCursor() != null) {
+            cursorPage = beerService.listBeersFromCursor(null, null, cursorPage.getNextCursor(), 7, false).block();
+            walked.addAll(cursorPage.getContent());
+        }
+        assertThat(ids(walked)).isEqualTo(byPriceInDatabase);
+
+        assertThat(beerService.streamBeers(null, first.getBeerStyle(), false).map(BeerDto::getBeerStyle).collectList().block())
+                .isNotEmpty().containsOnly(first.getBeerStyle().name());
+        assertThat(beerService.getById(first.getId(), true).block().getQuantityOnHand()).isEqualTo(first.getQuantityOnHand());
+        assertThat(beerService.getByUpc(first.getUpc()).block().getId()).isEqualTo(first.getId());
+        assertThat(beerService.getByIds(List.of(first.getId(), -1), false).map(BeerBatchGetResult::isFound).collectList().block())
+                .containsExactly(true, false);
+        assertThat(beerService.getByUpcs(List.of("no-such-upc", first.getUpc()), false).map(BeerBatchGetResult::isFound).collectList().block())
+                .containsExactly(false, true);
+
+        assertThat(connectionsAcquired()).isEqualTo(acquired);
+    }
+
+    @Test
+    void writesAreVisibleAsSoonAsTheyComplete() {
+
+        BeerDto saved = beerService.saveNewBeer(BeerDto.builder()
+                .beerName("Read Model Lager")
+                .beerStyle(BeerStyleEnum.LAGER.name())
+                .upc("0631234299001")
+                .price(new BigDecimal("2.99"))
+                .quantityOnHand(10)
+                .build()).block();
+        assertThat(beerService.getByUpc("0631234299001").block().getId()).isEqualTo(saved.getId());
+        assertThat(ids(beerService.listBeers("Read Model Lager", null, PageRequest.of(0, 5), false).block().getContent()))
+                .containsExactly(saved.getId());
+
+        saved.setUpc("0631234299002");
+        beerService.updateBeer(saved.getId(), saved).block();
+        assertThat(beerService.getByUpc("0631234299001").blockOptional()).isEmpty();
+        assertThat(beerService.getByUpc("0631234299002").block().getId()).isEqualTo(saved.getId());
+
+        beerService.adjustInventory(saved.getId(), -4).block();
+        assertThat(beerReadModel.findById(saved.getId()).getQuantityOnHand()).isEqualTo(6);
+
+        beerService.deleteReactiveBeer(saved.getId()).block();
+        assertThat(beerReadModel.findById(saved.getId())).isNull();
+        assertThat(beerService.listBeers("Read Model Lager", null, PageRequest.of(0, 5), false).block().getContent()).isEmpty();
+
+        assertThat(beerReadModel.check().block().isConsistent()).isTrue();
+    }
+
+    @Test
+    void checkReportsWritesThatBypassedTheModel() {
+
+        webTestClient.get().uri("/actuator/beerReadModel")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.serving").isEqualTo(true)
+                .jsonPath("$.consistent").isEqualTo(true);
+
+        Beer behindItsBack = beerRepository.save(Beer.builder()
+                .beerName("Unseen Stout")
+                .beerStyle(BeerStyleEnum.STOUT)
+                .upc("0631234299003")
+                .price(new BigDecimal("4.49"))
+                .quantityOnHand(3)
+                .build()).block();
+
+        BeerReadModel.Consistency consistency = beerReadModel.check().block();
+        assertThat(consistency.isConsistent()).isFalse();
+        assertThat(consistency.getMissingFromModel()).containsExactly(behindItsBack.getId());
+        assertThat(consistency.getTableSize()).isEqualTo(consistency.getModelSize() + 1);
+
+        beerRepository.deleteById(behindItsBack.getId()).block();
+        assertThat(beerReadModel.check().block().isConsistent()).isTrue();
+    }
+
+    @Test
+    void bulkCreatedBeersMatchTheirRows() {
+
+        List<BeerDto> saved = beerService.saveNewBeers(List.of(
+                BeerDto.builder().beerName("Bulk Porter").beerStyle(BeerStyleEnum.PORTER.name())
+                        .upc("0631234299020").price(new BigDecimal("3.29")).quantityOnHand(5).build(),
+                BeerDto.builder().beerName("Bulk Pilsner").beerStyle(BeerStyleEnum.PILSNER.name())
+                        .upc("0631234299021").price(new BigDecimal("2.79")).quantityOnHand(8).build()))
+                .collectList().block();
+
+        assertThat(saved).extracting(BeerDto::getVersion).containsOnly(0L);
+        assertThat(beerReadModel.findById(saved.get(0).getId()).getVersion()).isEqualTo(0L);
+        assertThat(beerReadModel.check().block().isConsistent()).isTrue();
+
+        saved.forEach(beer -> beerService.deleteReactiveBeer(beer.getId()).block());
+    }
+
+    @Test
+    void writesHandedOverOutOfOrderKeepTheNewestBeer() {
+
+        beerReadModel.put(beer(900001, 2, "Race Lager", BeerStyleEnum.LAGER, "0631234299010", "3.99"));
+        beerReadModel.put(beer(900001, 1, "Race Lager Old", BeerStyleEnum.LAGER, "0631234299011", "3.49"));
+
+        assertThat(beerReadModel.findById(900001).getVersion()).isEqualTo(2);
+        assertThat(beerReadModel.findByUpc("0631234299010").getId()).isEqualTo(900001);
+        assertThat(beerReadModel.findByUpc("0631234299011")).isNull();
+        assertThat(beerReadModel.list("Race Lager Old", null, BeerCursor.DEFAULT_SORT_KEY)).isEmpty();
+
+        // the delete reached the database after an update that is handed over later
+        beerReadModel.remove(900001);
+        beerReadModel.put(beer(900001, 3, "Race Lager", BeerStyleEnum.LAGER, "0631234299010", "3.99"));
+
+        assertThat(beerReadModel.findById(900001)).isNull();
+        assertThat(beerReadModel.findByUpc("0631234299010")).isNull();
+        assertThat(beerReadModel.list("Race Lager", null, BeerCursor.DEFAULT_SORT_KEY)).isEmpty();
+    }
+
+    @Test
+    void listingsStaySortedAsBeersChange() {
+
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(900100 + i);
+            beerReadModel.put(beer(900100 + i, 0, "Sorted Ale " + (i % 4), BeerStyleEnum.ALE,
+                    "06312342991" + String.format("%02d", i), (i * 7 % 20) + ".49"));
+        }
+        for (int i = 0; i < 20; i += 3) {
+            beerReadModel.put(beer(900100 + i, 1, "Sorted Ale " + (i % 5), BeerStyleEnum.IPA,
+                    "06312342992" + String.format("%02d", i), (i * 3 % 20) + ".99"));
+        }
+        beerReadModel.remove(900105);
+        beerReadModel.remove(900112);
+
+        for (String sortKey : List.of("id", "beerName", "price")) {
+            List<Beer> listing = beerReadModel.list(null, null, sortKey);
+            List<Beer> resorted = new ArrayList<>(listing);
+            resorted.sort(sortKey.equals("beerName")
+                    ? Comparator.comparing(Beer::getBeerName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                            .thenComparing(Beer::getId)
+                    : sortKey.equals("price")
+                    ? Comparator.comparing(Beer::getPrice, Comparator.nullsFirst(Comparator.<BigDecimal>naturalOrder()))
+                            .thenComparing(Beer::getId)
+                    : Comparator.comparing(Beer::getId));
+            assertThat(listing).isEqualTo(resorted);
+            assertThat(listing).extracting(Beer::getId).contains(900100, 900119).doesNotContain(900105, 900112);
+        }
+        assertThat(beerReadModel.list(null, BeerStyleEnum.IPA, BeerCursor.DEFAULT_SORT_KEY)).extracting(Beer::getId)
+                .filteredOn(ids::contains)
+                .containsExactly(900100, 900103, 900106, 900109, 900115, 900118);
+        assertThat(beerReadModel.list("Sorted Ale 1", BeerStyleEnum.ALE, BeerCursor.DEFAULT_SORT_KEY)).extracting(Beer::getId)
+                .containsExactly(900101, 900113, 900117);
+        assertThat(beerReadModel.findByUpc("0631234299103")).isNull();
+        assertThat(beerReadModel.findByUpc("0631234299203").getId()).isEqualTo(900103);
+
+        ids.forEach(beerReadModel::remove);
+        assertThat(beerReadModel.list("Sorted Ale 1", null, BeerCursor.DEFAULT_SORT_KEY)).isEmpty();
+    }
+
+    private static Beer beer(int id, long version, String beerName, BeerStyleEnum beerStyle, String upc, String price) {
+        return Beer.builder()
+                .id(id)
+                .version(version)
+                .beerName(beerName)
+                .beerStyle(beerStyle)
+                .upc(upc)
+                .price(new BigDecimal(price))
+                .quantityOnHand(1)
+                .build();
+    }
+
+    private long connectionsAcquired() {
+        return meterRegistry.find("r2dbc.pool.acquire").timers().stream().mapToLong(Timer::count).sum();
+    }
+
+    private static List<Integer> ids(List<BeerDto> beers) {
+        return beers.stream().map(BeerDto::getId).collect(Collectors.toList());
+    }
+}
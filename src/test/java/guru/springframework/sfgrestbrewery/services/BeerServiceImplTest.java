@@ -0,0 +1,401 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.sfgrestbrewery.bootstrap.BeerLoader;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.web.controller.InsufficientInventoryException;
+import guru.springframework.sfgrestbrewery.web.controller.NotFoundException;
+import guru.springframework.sfgrestbrewery.web.controller.PreconditionFailedException;
+import guru.springframework.sfgrestbrewery.web.mappers.BeerMapper;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerETag;
+import guru.springframework.sfgrestbrewery.web.model.BeerJson;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Slf4j
+@SpringBootTest
+class BeerServiceImplTest {
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerMapper beerMapper;
+
+    @Autowired
+    R2dbcEntityTemplate r2dbcEntityTemplate;
+
+    @Autowired
+    TransactionalOperator transactionalOperator;
+
+    @Autowired
+    BeerCache beerCache;
+
+    @Autowired
+    BeerLookup beerLookup;
+
+    @Autowired
+    BeerSearchIndex beerSearchIndex;
+
+    @Autowired
+    BeerInventory beerInventory;
+
+    @Autowired
+    BeerMetrics beerMetrics;
+
+    @Autowired
+    BeerQueryLimiter beerQueryLimiter;
+
+    @Test
+    void listBeersReportsTotalOfAllMatchingBeers() {
+
+        BeerPagedList firstPage = beerService.listBeers(null, null, PageRequest.of(0, 5), false).block();
+
+        assertThat(firstPage.getContent()).hasSize(5);
+        assertThat(firstPage.getTotalElements()).isGreaterThan(5);
+        assertThat(firstPage.getTotalPages()).isEqualTo((int) Math.ceil(firstPage.getTotalElements() / 5.0));
+        assertThat(firstPage.getNextCursor()).isNotNull();
+    }
+
+    @Test
+    void cursorPagesMatchOffsetPages() {
+
+        PageRequest byName = PageRequest.of(0, 4, Sort.by("beerName"));
+        BeerPagedList page = beerService.listBeers(null, null, byName, false).block();
+
+        List<Integer> seekIds = new ArrayList<>(ids(page));
+        int pages = 1;
+        while (page.getNextCursor() != null) {
+            page = beerService.listBeersFromCursor(null, null, page.getNextCursor(), 4, false).block();
+            assertThat(page.getNumber()).isEqualTo(pages);
+            seekIds.addAll(ids(page));
+            pages++;
+        }
+
+        List<Integer> offsetIds = new ArrayList<>();
+        for (int i = 0; i < pages; i++) {
+            offsetIds.addAll(ids(beerService.listBeers(null, null, PageRequest.of(i, 4, Sort.by("beerName")), false).block()));
+        }
+
+        assertThat(seekIds).hasSize((int) page.getTotalElements());
+        assertThat(seekIds).containsExactlyElementsOf(offsetIds);
+    }
+
+    @Test
+    void cursorKeepsTheFilter() {
+
+        BeerPagedList page = beerService.listBeers(null, BeerStyleEnum.STOUT, PageRequest.of(0, 2), false).block();
+        long total = page.getTotalElements();
+        List<BeerDto> beers = new ArrayList<>(page.getContent());
+
+        while (page.getNextCursor() != null) {
+            page = beerService.listBeersFromCursor(null, BeerStyleEnum.STOUT, page.getNextCursor(), 2, false).block();
+            beers.addAll(page.getContent());
+        }
+
+        assertThat(beers).hasSize((int) total);
+        assertThat(beers).allMatch(beerDto -> BeerStyleEnum.STOUT.name().equals(beerDto.getBeerStyle()));
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+
+        assertThrows(ServerWebInputException.class, () ->
+                beerService.listBeersFromCursor(null, null, "not-a-cursor", 5, false).block());
+    }
+
+    @Test
+    void unsupportedSortKeyIsRejected() {
+
+        assertThrows(ServerWebInputException.class, () ->
+                beerService.listBeers(null, null, PageRequest.of(0, 5, Sort.by("upc")), false).block());
+    }
+
+    @Test
+    void pagesFromTheReadModelMatchPagesFromTheDatabase() {
+
+        BeerReadModel readModel = new BeerReadModel(beerRepository, meterRegistry, true);
+        readModel.load();
+        BeerService fromModel = new BeerServiceImpl(beerRepository, beerMapper, r2dbcEntityTemplate,
+                transactionalOperator, beerCache, beerLookup, beerSearchIndex, beerInventory, beerMetrics,
+                beerQueryLimiter, readModel, objectMapper);
+
+        // showInventoryOnHand bypasses the list cache, so both services really build their page
+        PageRequest byPrice = PageRequest.of(1, 5, Sort.by("price"));
+        BeerPagedList fromDatabase = beerService.listBeers(null, null, byPrice, true).block();
+        BeerPagedList modelled = fromModel.listBeers(null, null, byPrice, true).block();
+
+        assertThat(modelled.getContent()).isNotEmpty().isEqualTo(fromDatabase.getContent());
+        assertThat(modelled.getContent()).extracting(BeerDto::getQuantityOnHand).containsOnlyNulls();
+        assertThat(modelled.getTotalElements()).isEqualTo(fromDatabase.getTotalElements());
+        assertThat(modelled.getNextCursor()).isEqualTo(fromDatabase.getNextCursor());
+
+        assertThat(fromModel.listBeersFromCursor(null, null, modelled.getNextCursor(), 5, true).block().getContent())
+                .isEqualTo(beerService.listBeersFromCursor(null, null, fromDatabase.getNextCursor(), 5, true).block()
+                        .getContent());
+    }
+
+    @Test
+    void getByIdIsServedFromCacheUntilUpdated() {
+
+        BeerDto beer = beerService.getById(2, false).block();
+        double hits = cacheHits(BeerCache.BEER_CACHE);
+
+        assertThat(beerService.getById(2, false).block()).isEqualTo(beer);
+        assertThat(cacheHits(BeerCache.BEER_CACHE)).isEqualTo(hits + 1);
+
+        beerService.updateBeer(2, BeerDto.builder()
+                .beerName("Cache Buster")
+                .beerStyle(beer.getBeerStyle())
+                .upc(beer.getUpc())
+                .price(beer.getPrice())
+                .build()).block();
+
+        assertThat(beerService.getById(2, false).block().getBeerName()).isEqualTo("Cache Buster");
+        assertThat(beerService.getByUpc(beer.getUpc()).block().getBeerName()).isEqualTo("Cache Buster");
+    }
+
+    @Test
+    void encodedBeerIsServedFromCacheUntilUpdated() throws Exception {
+
+        BeerDto beer = beerService.getById(3, false).block();
+        BeerJson json = beerService.getByIdAsJson(3).block();
+        double hits = cacheHits(BeerCache.BEER_JSON_CACHE);
+
+        assertThat(json.getJson()).isEqualTo(objectMapper.writeValueAsBytes(beer));
+        assertThat(json.getETag()).isEqualTo(BeerETag.of(beer));
+        assertThat(beerService.getByIdAsJson(3).block()).isSameAs(json);
+        assertThat(beerService.getByUpcAsJson(beer.getUpc()).block().getJson()).isEqualTo(json.getJson());
+        assertThat(cacheHits(BeerCache.BEER_JSON_CACHE)).isEqualTo(hits + 1);
+
+        beerService.updateBeer(3, BeerDto.builder()
+                .beerName("Byte Buster")
+                .beerStyle(beer.getBeerStyle())
+                .upc(beer.getUpc())
+                .price(beer.getPrice())
+                .build()).block();
+
+        BeerJson updated = beerService.getByIdAsJson(3).block();
+        assertThat(objectMapper.readValue(updated.getJson(), BeerDto.class).getBeerName()).isEqualTo("Byte Buster");
+        assertThat(updated.getETag()).isNotEqualTo(json.getETag());
+        assertThat(objectMapper.readValue(beerService.getByUpcAsJson(beer.getUpc()).block().getJson(), BeerDto.class)
+                .getBeerName()).isEqualTo("Byte Buster");
+        assertThat(beerService.getByIdAsJson(Integer.MAX_VALUE).block()).isNull();
+    }
+
+    @Test
+    void updateOnlyAppliesAtTheExpectedVersion() {
+
+        BeerDto beer = beerService.getById(4, false).block();
+        BeerDto update = BeerDto.builder()
+                .beerName("Version Check")
+                .beerStyle(beer.getBeerStyle())
+                .upc(beer.getUpc())
+                .price(beer.getPrice())
+                .build();
+
+        assertThrows(PreconditionFailedException.class,
+                () -> beerService.updateBeer(4, update, beer.getVersion() - 1).block());
+        assertThat(beerService.getById(4, false).block().getBeerName()).isEqualTo(beer.getBeerName());
+
+        BeerDto saved = beerService.updateBeer(4, update, beer.getVersion()).block();
+        assertThat(saved.getVersion()).isGreaterThan(beer.getVersion());
+        assertThat(saved.getLastUpdatedDate()).isNotNull();
+
+        // an inventory change moves the version too, so the cached beer can't hand out the old ETag
+        beerService.adjustInventory(4, 1).block();
+        assertThat(beerService.getById(4, false).block().getVersion()).isGreaterThan(saved.getVersion());
+    }
+
+    @Test
+    void searchMatchesNameWordsAndUpcsAndFollowsWrites() {
+
+        assertThat(beerService.searchBeers("mango", 10).collectList().block())
+                .extracting(BeerDto::getBeerName).contains("Mango Bobs");
+        assertThat(beerService.searchBeers("BOB", 10).collectList().block())
+                .extracting(BeerDto::getBeerName).contains("Mango Bobs");
+        assertThat(beerService.searchBeers(BeerLoader.BEER_3_UPC.substring(0, 8), 10).collectList().block())
+                .extracting(BeerDto::getUpc).containsExactly(BeerLoader.BEER_3_UPC);
+
+        BeerDto saved = beerService.saveNewBeer(BeerDto.builder()
+                .beerName("Quokka Quencher")
+                .beerStyle(BeerStyleEnum.GOSE.name())
+                .upc("search-1")
+                .price(new BigDecimal("5.25"))
+                .build()).block();
+        assertThat(beerService.searchBeers("quok", 10).collectList().block())
+                .extracting(BeerDto::getId).containsExactly(saved.getId());
+
+        beerService.updateBeer(saved.getId(), BeerDto.builder()
+                .beerName("Wombat Wheat")
+                .beerStyle(BeerStyleEnum.WHEAT.name())
+                .upc("search-1")
+                .price(new BigDecimal("5.25"))
+                .build()).block();
+        assertThat(beerService.searchBeers("quok", 10).collectList().block()).isEmpty();
+        assertThat(beerService.searchBeers("wheat", 10).collectList().block())
+                .extracting(BeerDto::getId).contains(saved.getId());
+
+        beerService.deleteReactiveBeer(saved.getId()).block();
+        assertThat(beerService.searchBeers("wombat", 10).collectList().block()).isEmpty();
+        assertThat(beerService.searchBeers("search-1", 10).collectList().block()).isEmpty();
+    }
+
+    @Test
+    void searchStopsAtTheLimit() {
+
+        beerService.saveNewBeers(newBeers("limited", 20)).blockLast();
+
+        assertThat(beerService.searchBeers("limited", 5).collectList().block()).hasSize(5);
+        assertThat(beerService.searchBeers("limited beer 1", 50).collectList().block())
+                .extracting(BeerDto::getBeerName)
+                .containsExactlyInAnyOrder("limited beer 1", "limited beer 10", "limited beer 11", "limited beer 12",
+                        "limited beer 13", "limited beer 14", "limited beer 15", "limited beer 16", "limited beer 17",
+                        "limited beer 18", "limited beer 19");
+    }
+
+    @Test
+    void concurrentDecrementsOfOneBeerNeitherLoseUpdatesNorOversell() {
+
+        BeerDto hotBeer = beerService.saveNewBeer(BeerDto.builder()
+                .beerName("Flash Sale Pils")
+                .beerStyle(BeerStyleEnum.PILSNER.name())
+                .upc("hot-1")
+                .price(new BigDecimal("2.99"))
+                .quantityOnHand(300)
+                .build()).block();
+
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+
+        // 500 buyers for 300 beers, all in flight at once, with edits to the same row racing them
+        Flux<Object> decrements = Flux.range(0, 500)
+                .flatMap(i -> beerService.adjustInventory(hotBeer.getId(), -1)
+                        .doOnNext(beerDto -> sold.incrementAndGet())
+                        .onErrorResume(InsufficientInventoryException.class, e -> {
+                            refused.incrementAndGet();
+                            return Mono.empty();
+                        }), 500);
+        Flux<Object> edits = Flux.range(0, 20)
+                .flatMap(i -> beerService.updateBeer(hotBeer.getId(), BeerDto.builder()
+                        .beerName("Flash Sale Pils " + i)
+                        .beerStyle(BeerStyleEnum.PILSNER.name())
+                        .upc("hot-1")
+                        .price(new BigDecimal("2.99"))
+                        .build())
+                        .onErrorResume(OptimisticLockingFailureException.class, e -> Mono.empty()), 20);
+
+        Flux.merge(decrements, edits).blockLast();
+
+        assertThat(sold.get()).isEqualTo(300);
+        assertThat(refused.get()).isEqualTo(200);
+        assertThat(beerService.getById(hotBeer.getId(), true).block().getQuantityOnHand()).isZero();
+    }
+
+    @Test
+    void adjustingAnUnknownBeerIsNotFound() {
+
+        assertThrows(NotFoundException.class, () -> beerService.adjustInventory(999_999, 1).block());
+    }
+
+    @Test
+    void stagesAreTimedAndTaggedWithCacheOutcome() {
+
+        double misses = serviceCalls("getByUpc", "miss");
+        double hits = serviceCalls("getByUpc", "hit");
+        Timer dbTimer = meterRegistry.find(BeerMetrics.DB_TIMER).tag("method", "getByUpc").timer();
+        long queries = dbTimer == null ? 0 : dbTimer.count();
+
+        beerService.getByUpc(BeerLoader.BEER_7_UPC).block();
+        beerService.getByUpc(BeerLoader.BEER_7_UPC).block();
+
+        assertThat(serviceCalls("getByUpc", "miss")).isEqualTo(misses + 1);
+        assertThat(serviceCalls("getByUpc", "hit")).isEqualTo(hits + 1);
+        assertThat(meterRegistry.get(BeerMetrics.DB_TIMER).tag("method", "getByUpc").timer().count()).isEqualTo(queries + 1);
+        assertThat(meterRegistry.get(BeerMetrics.MAPPING_TIMER).tag("method", "getByUpc").timer().count()).isPositive();
+
+        beerService.listBeers(null, null, PageRequest.of(0, 3), true).block();
+        assertThat(meterRegistry.get(BeerMetrics.SERVICE_TIMER).tags("method", "listBeers", "cache", "bypass").timer().count())
+                .isPositive();
+        assertThat(meterRegistry.get(BeerMetrics.DB_TIMER).tag("method", "listBeers.count").timer().count()).isPositive();
+    }
+
+    @Test
+    void saveNewBeersInsertsEveryBeerWithOneBatchedStatement() {
+
+        List<BeerDto> bulk = newBeers("bulk", 500);
+        double queries = dbCalls("saveNewBeers");
+        List<BeerDto> saved = beerService.saveNewBeers(bulk).collectList().block();
+
+        assertThat(saved).hasSize(500);
+        assertThat(saved).extracting(BeerDto::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(saved).extracting(BeerDto::getUpc).containsExactlyElementsOf(
+                bulk.stream().map(BeerDto::getUpc).collect(Collectors.toList()));
+        assertThat(beerService.getById(saved.get(42).getId(), false).block().getUpc()).isEqualTo(bulk.get(42).getUpc());
+        // BeerBatchInsertBenchmark compares its cost with one insert per beer
+        assertThat(dbCalls("saveNewBeers") - queries).isEqualTo(1);
+    }
+
+    private List<BeerDto> newBeers(String prefix, int count) {
+        return IntStream.range(0, count).mapToObj(i -> BeerDto.builder()
+                .beerName(prefix + " beer " + i)
+                .beerStyle(BeerStyleEnum.LAGER.name())
+                .upc(prefix + i)
+                .price(new BigDecimal("4.99"))
+                .build())
+                .collect(Collectors.toList());
+    }
+
+    private double dbCalls(String method) {
+        Timer timer = meterRegistry.find(BeerMetrics.DB_TIMER).tag("method", method).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private double serviceCalls(String method, String cache) {
+        Timer timer = meterRegistry.find(BeerMetrics.SERVICE_TIMER).tags("method", method, "cache", cache).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private double cacheHits(String cacheName) {
+        return meterRegistry.get("cache.gets").tag("cache", cacheName).tag("result", "hit")
+                .functionCounter().count();
+    }
+
+    private List<Integer> ids(BeerPagedList page) {
+        return page.getContent().stream().map(BeerDto::getId).collect(Collectors.toList());
+    }
+}
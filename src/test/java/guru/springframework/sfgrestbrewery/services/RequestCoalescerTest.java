@@ -0,0 +1,83 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestCoalescerTest {
+
+    SimpleMeterRegistry meterRegistry;
+    AtomicInteger loads;
+    Sinks.One<String> result;
+    RequestCoalescer<Integer, String> coalescer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        loads = new AtomicInteger();
+        result = Sinks.one();
+        coalescer = new RequestCoalescer<>("id", key -> {
+            loads.incrementAndGet();
+            return result.asMono();
+        }, meterRegistry);
+    }
+
+    @Test
+    void concurrentLookupsShareOneLoad() {
+
+        List<String> values = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            coalescer.get(1).subscribe(values::add);
+        }
+
+        result.tryEmitValue("beer");
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(values).hasSize(10).containsOnly("beer");
+        assertThat(meterRegistry.get("beer.lookup.coalesced").counter().count()).isEqualTo(9);
+    }
+
+    @Test
+    void cancellingOneCallerDoesNotCancelTheLoad() {
+
+        List<String> values = new CopyOnWriteArrayList<>();
+        Disposable leaving = coalescer.get(1).subscribe(values::add);
+        coalescer.get(1).subscribe(values::add);
+
+        leaving.dispose();
+        result.tryEmitValue("beer");
+
+        assertThat(values).containsExactly("beer");
+    }
+
+    @Test
+    void nextLookupLoadsAgainOnceTheFirstCompleted() {
+
+        result.tryEmitValue("beer");
+        assertThat(coalescer.get(1).block()).isEqualTo("beer");
+        assertThat(coalescer.get(1).block()).isEqualTo("beer");
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void emptyResultCompletesEveryCaller() {
+
+        AtomicInteger completed = new AtomicInteger();
+        coalescer.get(1).doOnSuccess(value -> completed.incrementAndGet()).subscribe();
+        coalescer.get(1).doOnSuccess(value -> completed.incrementAndGet()).subscribe();
+
+        result.tryEmitEmpty();
+
+        assertThat(completed.get()).isEqualTo(2);
+        assertThat(coalescer.get(1).block()).isNull();
+    }
+}
@@ -0,0 +1,132 @@
+package guru.springframework.sfgrestbrewery.web.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlFilterTest {
+
+    SimpleMeterRegistry meterRegistry;
+    AtomicLong nanoTime;
+    Sinks.Empty<Void> response;
+    WebFilterChain pending;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        nanoTime = new AtomicLong();
+        response = Sinks.empty();
+        pending = exchange -> response.asMono();
+    }
+
+    @Test
+    void routesAreClassifiedByPriority() {
+
+        assertThat(route(MockServerHttpRequest.get("/api/v2/beer/search"))).isEqualTo(AdmissionRoute.LIST);
+        assertThat(route(MockServerHttpRequest.get("/api/v1/beer"))).isEqualTo(AdmissionRoute.LIST);
+        assertThat(route(MockServerHttpRequest.get("/api/v2/beer/12"))).isEqualTo(AdmissionRoute.LOOKUP);
+        assertThat(route(MockServerHttpRequest.get("/api/v1/beerUpc/0631234200036"))).isEqualTo(AdmissionRoute.LOOKUP);
+        assertThat(route(MockServerHttpRequest.post("/api/v2/beer:batchGet"))).isEqualTo(AdmissionRoute.LOOKUP);
+        assertThat(route(MockServerHttpRequest.put("/api/v2/beer/12"))).isEqualTo(AdmissionRoute.WRITE);
+        assertThat(route(MockServerHttpRequest.post("/api/v2/beer/12/inventory"))).isEqualTo(AdmissionRoute.WRITE);
+        assertThat(route(MockServerHttpRequest.get("/api/v1/customer"))).isNull();
+        assertThat(route(MockServerHttpRequest.get("/actuator/health"))).isNull();
+    }
+
+    @Test
+    void anEmptyBucketIsRefusedWith429UntilItRefills() {
+
+        AdmissionControlFilter filter = filter(100, 2);
+
+        assertThat(status(filter, MockServerHttpRequest.get("/api/v2/beer/1"), exchange -> Mono.empty())).isNull();
+        assertThat(status(filter, MockServerHttpRequest.get("/api/v2/beer/1"), exchange -> Mono.empty())).isNull();
+
+        MockServerWebExchange refused = exchange(MockServerHttpRequest.get("/api/v2/beer/1"));
+        filter.filter(refused, exchange -> Mono.empty()).block();
+        assertThat(refused.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(refused.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(status(filter, MockServerHttpRequest.get("/api/v2/beer/1"), exchange -> Mono.empty())).isNull();
+
+        assertThat(count("lookup", "admitted")).isEqualTo(3);
+        assertThat(count("lookup", "throttled")).isEqualTo(1);
+    }
+
+    @Test
+    void listsAreShedBeforeLookups() {
+
+        // lists may take half of the four slots, lookups all of them
+        AdmissionControlFilter filter = filter(4, 1000);
+
+        filter.filter(exchange(MockServerHttpRequest.get("/api/v2/beer/search")), pending).subscribe();
+        filter.filter(exchange(MockServerHttpRequest.get("/api/v2/beer/1")), pending).subscribe();
+
+        assertThat(status(filter, MockServerHttpRequest.get("/api/v2/beer/search"), pending)).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        filter.filter(exchange(MockServerHttpRequest.get("/api/v2/beer/2")), pending).subscribe();
+        filter.filter(exchange(MockServerHttpRequest.get("/api/v2/beer/3")), pending).subscribe();
+        assertThat(status(filter, MockServerHttpRequest.get("/api/v2/beer/4"), pending)).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(meterRegistry.get(AdmissionControlFilter.IN_FLIGHT_GAUGE).gauge().value()).isEqualTo(4);
+
+        response.tryEmitEmpty();
+
+        assertThat(meterRegistry.get(AdmissionControlFilter.IN_FLIGHT_GAUGE).gauge().value()).isZero();
+        assertThat(status(filter, MockServerHttpRequest.get("/api/v2/beer/search"), exchange -> Mono.empty())).isNull();
+        assertThat(count("list", "shed")).isEqualTo(1);
+        assertThat(count("lookup", "shed")).isEqualTo(1);
+    }
+
+    @Test
+    void otherRoutesAndADisabledFilterAreLetThrough() {
+
+        AdmissionControlFilter disabled = new AdmissionControlFilter(meterRegistry, false, 1, 0.5, 0.5,
+                1, 1, 1, Duration.ofSeconds(1), nanoTime::get);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(status(disabled, MockServerHttpRequest.get("/api/v2/beer/search"), exchange -> Mono.empty())).isNull();
+        }
+        assertThat(count("list", "admitted")).isZero();
+
+        AdmissionControlFilter filter = filter(1, 1);
+        filter.filter(exchange(MockServerHttpRequest.get("/api/v2/beer/1")), pending).subscribe();
+        assertThat(status(filter, MockServerHttpRequest.get("/api/v1/customer"), exchange -> Mono.empty())).isNull();
+    }
+
+    private AdmissionControlFilter filter(int maxConcurrency, double rate) {
+        return new AdmissionControlFilter(meterRegistry, true, maxConcurrency, 0.75, 0.5,
+                rate, rate, rate, Duration.ofSeconds(1), nanoTime::get);
+    }
+
+    private HttpStatus status(AdmissionControlFilter filter, MockServerHttpRequest.BaseBuilder<?> request, WebFilterChain chain) {
+        MockServerWebExchange exchange = exchange(request);
+        filter.filter(exchange, chain).subscribe();
+        return exchange.getResponse().getStatusCode();
+    }
+
+    private static MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+        return MockServerWebExchange.from(request);
+    }
+
+    private static AdmissionRoute route(MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerHttpRequest built = request.build();
+        return AdmissionRoute.of(built.getMethod(), built.getPath().pathWithinApplication());
+    }
+
+    private double count(String route, String outcome) {
+        return meterRegistry.get(AdmissionControlFilter.ADMISSION_COUNTER)
+                .tags("route", route, "outcome", outcome).counter().count();
+    }
+}
@@ -5,14 +5,19 @@ import guru.springframework.sfgrestbrewery.services.BeerService;
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
 import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
 import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.querydsl.QPageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
@@ -26,7 +31,9 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 
+// the admission filter is part of the slice and counts into a registry
 @WebFluxTest(BeerController.class)
+@Import(SimpleMeterRegistry.class)
 class BeerControllerTest {
 
     @Autowired
@@ -40,6 +47,7 @@ class BeerControllerTest {
     void setUp() {
 
       validBeer =  BeerDto.builder()
+                .id(1)
                 .beerName("Test beer")
                 .beerStyle("PALE_ALE")
                 .upc(BeerLoader.BEER_1_UPC)
@@ -64,6 +72,67 @@ class BeerControllerTest {
 
 
 
+    }
+
+    @Test
+    void getBeerByIdShouldAnswerNotModifiedForItsETag(){
+
+        validBeer.setVersion(3L);
+        given(beerService.getById(any(),any())).willReturn(Mono.just(validBeer));
+
+        webTestClient.get()
+                .uri("/api/v1/beer/{beerId}", 1)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"1-3\"")
+                .expectBody().jsonPath("$.version").doesNotExist();
+
+        webTestClient.get()
+                .uri("/api/v1/beer/{beerId}", 1)
+                .ifNoneMatch("\"1-3\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        webTestClient.get()
+                .uri("/api/v1/beer/{beerId}", 1)
+                .ifNoneMatch("\"1-2\"")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void getMissingBeerByIdShouldReturnNotFound(){
+
+        given(beerService.getById(any(),any())).willReturn(Mono.empty());
+
+        webTestClient.get()
+                .uri("/api/v1/beer/{beerId}", 200)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void saveOrUpdateWithADuplicateUpcShouldReturnConflict(){
+
+        validBeer.setId(null);
+        given(beerService.saveNewBeer(any())).willReturn(Mono.error(new DataIntegrityViolationException("beer_upc_uidx")));
+        given(beerService.updateBeer(any(), any(), any())).willReturn(Mono.error(new DataIntegrityViolationException("beer_upc_uidx")));
+
+        webTestClient.post()
+                .uri("/api/v1/beer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(validBeer)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(String.class).value(body -> body, equalTo("upc : a beer with this upc already exists"));
+
+        webTestClient.put()
+                .uri("/api/v1/beer/{beerId}", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(validBeer)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
     }
 
     @Test
@@ -95,6 +164,7 @@ class BeerControllerTest {
                 .uri(uriBuilder -> uriBuilder.path("/api/v1/beer")
                         .queryParam("beerName","Test beer")
                         .queryParam("beerStyle","PALE_ALE")
+                        .queryParam("pageSize", 5)
                         .build()
                 )
                 .accept(MediaType.APPLICATION_JSON)
@@ -106,6 +176,91 @@ class BeerControllerTest {
 
     }
 
+    @Test
+    void saveNewBeerShouldLocateTheSavedBeer() {
+
+        BeerDto newBeer = BeerDto.builder().beerName("Test beer").beerStyle("PALE_ALE").build();
+        given(beerService.saveNewBeer(any())).willReturn(Mono.just(validBeer));
+
+        webTestClient.post()
+                .uri("/api/v1/beer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(newBeer)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals("Location", "http://api.springframework.guru/api/v1/beer/1");
+    }
+
+    @Test
+    void updateBeerShouldReturnNoContent() {
+
+        BeerDto update = BeerDto.builder().beerName("Test beer").beerStyle("PALE_ALE").build();
+        given(beerService.updateBeer(eq(1), any(), isNull())).willReturn(Mono.just(validBeer));
+
+        webTestClient.put()
+                .uri("/api/v1/beer/{beerId}", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    void updateMissingBeerShouldReturnNotFound() {
+
+        BeerDto update = BeerDto.builder().beerName("Test beer").beerStyle("PALE_ALE").build();
+        given(beerService.updateBeer(eq(200), any(), isNull())).willReturn(Mono.just(BeerDto.builder().build()));
+
+        webTestClient.put()
+                .uri("/api/v1/beer/{beerId}", 200)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void updateBeerShouldHonourIfMatch() {
+
+        BeerDto update = BeerDto.builder().beerName("Test beer").beerStyle("PALE_ALE").build();
+        given(beerService.updateBeer(eq(1), any(), eq(3L))).willReturn(Mono.just(validBeer));
+        given(beerService.updateBeer(eq(1), any(), eq(2L)))
+                .willReturn(Mono.error(new PreconditionFailedException("Beer 1 is at version 3, not 2")));
+
+        webTestClient.put()
+                .uri("/api/v1/beer/{beerId}", 1)
+                .header(HttpHeaders.IF_MATCH, "\"1-3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.put()
+                .uri("/api/v1/beer/{beerId}", 1)
+                .header(HttpHeaders.IF_MATCH, "\"1-2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    void deleteBeerShouldWaitForTheDelete() {
+
+        given(beerService.deleteReactiveBeer(1)).willReturn(Mono.empty());
+        given(beerService.deleteReactiveBeer(200)).willReturn(Mono.error(new NotFoundException()));
+
+        webTestClient.delete()
+                .uri("/api/v1/beer/{beerId}", 1)
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.delete()
+                .uri("/api/v1/beer/{beerId}", 200)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
     @AfterEach
     void tearDown() {
     }
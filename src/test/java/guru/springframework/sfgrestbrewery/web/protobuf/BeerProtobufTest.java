@@ -0,0 +1,182 @@
+package guru.springframework.sfgrestbrewery.web.protobuf;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The golden vectors in src/test/resources/protobuf are the .txtpb next to them encoded by protoc 3.21.12:
+ *
+ *     protoc --proto_path=src/main/proto --encode=guru.springframework.sfgrestbrewery.Beer beer.proto \
+ *         < src/test/resources/protobuf/beer.txtpb > src/test/resources/protobuf/beer.bin
+ *
+ * and likewise page.txtpb as a BeerPage.
+ */
+class BeerProtobufTest {
+
+    private final BeerDto beer = BeerDto.builder()
+            .id(42)
+            .beerName("Mango Bobs")
+            .beerStyle("ALE")
+            .upc("0631234200036")
+            .price(new BigDecimal("12.90"))
+            .quantityOnHand(-3)
+            .createdDate(LocalDateTime.of(2021, 3, 27, 10, 15, 0, 123_000_000))
+            .build();
+
+    @Test
+    void beerSurvivesTheRoundTripWithNullsLeftUnset() {
+
+        BeerDto decoded = BeerProtobuf.decode(BeerProtobuf.encode(beer), BeerDto.class);
+
+        assertThat(decoded).isEqualTo(beer);
+        assertThat(decoded.getPrice().scale()).isEqualTo(2);
+        assertThat(decoded.getLastUpdatedDate()).isNull();
+    }
+
+    @Test
+    void beerIsEncodedAsProtocEncodesIt() throws IOException {
+
+        byte[] golden = golden("beer.bin");
+
+        assertThat(BeerProtobuf.encode(beer)).isEqualTo(golden);
+        assertThat(BeerProtobuf.decode(golden, BeerDto.class)).isEqualTo(beer);
+    }
+
+    @Test
+    void pageIsEncodedAsProtocEncodesIt() throws IOException {
+
+        BeerDto other = BeerDto.builder().id(43).beerName("Galaxy Cat").build();
+        BeerPagedList page = new BeerPagedList(List.of(beer, other), PageRequest.of(3, 2), 25, "next");
+        byte[] golden = golden("page.bin");
+
+        assertThat(BeerProtobuf.encode(page)).isEqualTo(golden);
+        BeerPagedList decoded = BeerProtobuf.decode(golden, BeerPagedList.class);
+        assertThat(decoded.getContent()).containsExactly(beer, other);
+        assertThat(decoded.getNumber()).isEqualTo(3);
+        assertThat(decoded.getTotalElements()).isEqualTo(25);
+    }
+
+    @Test
+    void fieldsAreWrittenAsTheSchemaNumbersThem() {
+
+        byte[] bytes = BeerProtobuf.encode(BeerDto.builder().id(150).beerName("A").build());
+
+        // field 1 varint 150, field 2 length delimited "A"
+        assertThat(bytes).containsExactly(0x08, 0x96, 0x01, 0x12, 0x01, 'A');
+    }
+
+    @Test
+    void unknownFieldsAreSkipped() {
+
+        byte[] known = BeerProtobuf.encode(BeerDto.builder().id(7).build());
+        // field 15 varint, field 16 length delimited, as a newer schema might send them
+        byte[] withUnknown = new byte[known.length + 6];
+        System.arraycopy(new byte[]{0x78, 0x05, (byte) 0x82, 0x01, 0x01, 'x'}, 0, withUnknown, 0, 6);
+        System.arraycopy(known, 0, withUnknown, 6, known.length);
+
+        assertThat(BeerProtobuf.decode(withUnknown, BeerDto.class).getId()).isEqualTo(7);
+    }
+
+    @Test
+    void pageKeepsItsPositionTotalAndCursor() {
+
+        BeerPagedList page = new BeerPagedList(List.of(beer, beer), PageRequest.of(3, 2), 25, "next");
+
+        BeerPagedList decoded = BeerProtobuf.decode(BeerProtobuf.encode(page), BeerPagedList.class);
+
+        assertThat(decoded.getContent()).containsExactly(beer, beer);
+        assertThat(decoded.getNumber()).isEqualTo(3);
+        assertThat(decoded.getSize()).isEqualTo(2);
+        assertThat(decoded.getTotalElements()).isEqualTo(25);
+        assertThat(decoded.getNextCursor()).isEqualTo("next");
+    }
+
+    @Test
+    void streamIsASequenceOfLengthPrefixedBeers() {
+
+        BeerDto other = BeerDto.builder().id(43).beerName("Galaxy Cat").build();
+        byte[] first = BeerProtobuf.encodeDelimited(beer);
+        byte[] second = BeerProtobuf.encodeDelimited(other);
+        byte[] stream = new byte[first.length + second.length];
+        System.arraycopy(first, 0, stream, 0, first.length);
+        System.arraycopy(second, 0, stream, first.length, second.length);
+
+        assertThat(BeerProtobuf.decodeDelimited(stream, BeerDto.class)).containsExactly(beer, other);
+    }
+
+    /**
+     * The sizes BeerCodecBenchmark's timings go with, for the page it encodes. At the time of writing 5300
+     * bytes of JSON, 3878 of CBOR, 2330 of Smile, which refers back to repeated names, and 2330 of protobuf.
+     */
+    @Test
+    void binaryEncodingsOfAPageAreSmallerThanJson() throws IOException {
+
+        List<BeerDto> beers = IntStream.range(0, 25).mapToObj(i -> BeerDto.builder()
+                .id(i)
+                .beerName("Beer " + i)
+                .beerStyle("LAGER")
+                .upc(String.format("%013d", i))
+                .price(new BigDecimal("9.99"))
+                .quantityOnHand(100 + i)
+                .createdDate(beer.getCreatedDate())
+                .lastUpdatedDate(beer.getCreatedDate())
+                .build())
+                .collect(Collectors.toList());
+        BeerPagedList page = new BeerPagedList(beers, PageRequest.of(1, 25), 1000, "bmV4dA");
+
+        int json = Jackson2ObjectMapperBuilder.json().build().writeValueAsBytes(page).length;
+        int cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build().writeValueAsBytes(page).length;
+        int smile = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build().writeValueAsBytes(page).length;
+        int protobuf = BeerProtobuf.encode(page).length;
+
+        assertThat(cbor).isLessThan(json);
+        assertThat(smile).isLessThan(json / 2);
+        assertThat(protobuf).isLessThan(json / 2);
+    }
+
+    @Test
+    void knownFieldWithAnotherWireTypeIsRejected() {
+
+        // id as a length delimited field, beer_name as a varint
+        assertThrows(IllegalArgumentException.class,
+                () -> BeerProtobuf.decode(new byte[]{0x0A, 0x01, 'x'}, BeerDto.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> BeerProtobuf.decode(new byte[]{0x10, 0x01}, BeerDto.class));
+        // a content entry as a varint
+        assertThrows(IllegalArgumentException.class,
+                () -> BeerProtobuf.decode(new byte[]{0x08, 0x01}, BeerPagedList.class));
+    }
+
+    @Test
+    void truncatedInputIsRejected() {
+
+        byte[] bytes = BeerProtobuf.encode(beer);
+        byte[] truncated = new byte[bytes.length - 3];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        assertThrows(IllegalArgumentException.class, () -> BeerProtobuf.decode(truncated, BeerDto.class));
+    }
+
+    private static byte[] golden(String name) throws IOException {
+        try (InputStream in = new ClassPathResource("protobuf/" + name).getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+}